@@ -15,6 +15,8 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -36,15 +38,12 @@ import java.io.IOException;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create API Product in Apigee EDGE
@@ -116,7 +115,7 @@ public class APIProductMojo extends GatewayAbstractMojo
 	protected void doUpdate(List<String> products) 
             throws MojoFailureException {
 		try {
-			List existingAPIProducts = null;
+			Set<String> existingAPIProducts = null;
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create &&
                 buildOption != OPTIONS.delete &&
@@ -127,53 +126,39 @@ public class APIProductMojo extends GatewayAbstractMojo
 			logger.info("Retrieving existing API Products");
 			existingAPIProducts = getAPIProduct(serverProfile);
 
-	        for (String product : products) {
-	        	String productName = getAPIProductName(product);
-	        	if (productName == null) {
-	        		throw new IllegalArgumentException(
-	        			"API Product does not have a name.\n" + product + "\n");
-	        	}
-
-        		if (existingAPIProducts.contains(productName)) {
-                    switch (buildOption) {
-                        case update:
-    						logger.info("API Product \"" + productName + 
-			           					"\" exists. Updating.");
-	          				updateAPIProduct(serverProfile, productName, product);
-                            break;
-                        case create:
-        			        logger.info("API Product \"" + productName + 
-    									"\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("API Product \"" + productName + 
-                                        "\" already exists. Deleting.");
-                            deleteAPIProduct(serverProfile, productName);
-                            break;
-                        case sync:
-                            logger.info("API Product \"" + productName + 
-                                        "\" already exists. Deleting and recreating.");
-                            deleteAPIProduct(serverProfile, productName);
-                            logger.info("Creating API Product - " + productName);
-                            createAPIProduct(serverProfile, product);
-                            break;
-	        		}
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating API Product - " + productName);
-                            createAPIProduct(serverProfile, product);
-                            break;
-                        case delete:
-                            logger.info("API Product \"" + productName + 
-                                        "\" does not exist. Skipping.");
-                            break;
-                    }
-	        	}
-			}
-		
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            for (String product : products) {
+                String productName = getAPIProductName(product);
+                if (productName == null) {
+                    throw new IllegalArgumentException(
+                       "API Product does not have a name.\n" + product + "\n");
+                }
+                items.add(new ReconcileItem(productName, product));
+            }
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingAPIProducts, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "API Product";
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createAPIProduct(serverProfile, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateAPIProduct(serverProfile, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteAPIProduct(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getAPIProduct(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getOrgConfig(serverProfile, "apiproducts", item.getName()));
+                }
+            });
+        
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
 														 e.getMessage());
@@ -293,37 +278,11 @@ public class APIProductMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getAPIProduct(ServerProfile profile)
+    public static Set<String> getAPIProduct(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getOrgConfig(profile, 
-                                                    "apiproducts");
-        if(response == null) return new ArrayList();
-        JSONArray products = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"products\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            products    = (JSONArray)obj1.get("products");
-
-        } catch (ParseException pe){
-            logger.error("Get API Product parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get API Product error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return products;
-    }	
+        return RestUtil.listOrgConfig(profile, "apiproducts", true).readAll();
+    }
 }
 
 
@@ -15,8 +15,13 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.PayloadComparator;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileEngine;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
 
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -30,23 +35,33 @@ import org.slf4j.LoggerFactory;
 
 import com.google.api.client.util.Key;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URLEncoder;
 import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create Apps in Apigee EDGE
@@ -60,6 +75,13 @@ import org.json.simple.parser.ParseException;
 public class AppMojo extends GatewayAbstractMojo
 {
 	static Logger logger = LoggerFactory.getLogger(AppMojo.class);
+
+	/**
+	 * Fields of an app in Apigee that are not part of developerApps.json;
+	 * keyExpiresIn is only used when the app is created
+	 */
+	static final Set<String> APP_SERVER_FIELDS = PayloadComparator.serverFieldsAnd(
+			"appId", "developerId", "credentials", "appFamily", "keyExpiresIn");
 	public static final String ____ATTENTION_MARKER____ =
 	"************************************************************************";
 
@@ -69,6 +91,12 @@ public class AppMojo extends GatewayAbstractMojo
 
 	OPTIONS buildOption = OPTIONS.none;
 
+	/* page size of the org developer and app listings */
+	static final int APP_PAGE_SIZE = 1000;
+
+	/* fewer developers are listed one by one */
+	static final int ORG_LISTING_MIN_DEVELOPERS = 10;
+
 	private ServerProfile serverProfile;
 
     public static class App {
@@ -115,6 +143,95 @@ public class AppMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * Apps in Apigee of the configured developers by developer and app name,
+	 * with their payloads
+	 */
+	static class AppInventory {
+		private final Map<String, Map<String, String>> apps =
+				new ConcurrentHashMap<String, Map<String, String>>();
+
+		synchronized void add(String developer, String app, String payload) {
+			Map<String, String> devApps = apps.get(developer.toLowerCase());
+			if (devApps == null) {
+				devApps = new ConcurrentHashMap<String, String>();
+				apps.put(developer.toLowerCase(), devApps);
+			}
+			devApps.put(app, payload);
+		}
+
+		Set<String> getApps(String developer) {
+			Map<String, String> devApps = apps.get(developer.toLowerCase());
+			return (devApps == null) ? Collections.<String>emptySet() : devApps.keySet();
+		}
+
+		String getPayload(String developer, String app) {
+			Map<String, String> devApps = apps.get(developer.toLowerCase());
+			return (devApps == null) ? null : devApps.get(app);
+		}
+	}
+
+	/**
+	 * Lists the apps of the developers with the org level expanded listings
+	 * (developers and apps, APP_PAGE_SIZE per call). Falls back to one
+	 * expanded listing per developer, in parallel, when they are not
+	 * available or when only a few developers are configured.
+	 */
+	protected AppInventory getInventory(Set<String> developers)
+			throws IOException, MojoFailureException {
+		AppInventory inventory = new AppInventory();
+		if (developers.size() >= ORG_LISTING_MIN_DEVELOPERS) {
+			try {
+				if (getOrgApps(serverProfile, developers, inventory)) {
+					return inventory;
+				}
+			} catch (IOException e) {
+				logger.info("Org app listing failed " + e.getMessage());
+			}
+			logger.info("Org app listing not available. Listing apps per developer.");
+			inventory = new AppInventory();
+		}
+		getDeveloperApps(developers, inventory);
+		return inventory;
+	}
+
+	private void getDeveloperApps(Set<String> developers,
+								  final AppInventory inventory)
+			throws MojoFailureException {
+		final List<String> failures =
+				Collections.synchronizedList(new ArrayList<String>());
+		WorkerPool pool = WorkerPool.forProfile(serverProfile, "app-list");
+		try {
+			for (final String developer : developers) {
+				pool.submit(new Callable<Void>() {
+					public Void call() {
+						try {
+							logger.info("Retrieving Apps of " + developer);
+							for (JsonObject app : ExportKeysMojo.getAppObjects(
+													serverProfile, developer)) {
+								inventory.add(developer, app.get("name").getAsString(),
+															app.toString());
+							}
+						} catch (Exception e) {
+							logger.error("Apps of " + developer + " list error " +
+														e.getMessage());
+							failures.add(developer + ": " + e.getMessage());
+						}
+						return null;
+					}
+				});
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoFailureException("Interrupted while listing apps");
+		}
+		if (!failures.isEmpty()) {
+			throw new MojoFailureException("Apigee network call error. Apps of " +
+					failures.size() + " developer(s) could not be listed: " + failures);
+		}
+	}
+
 	protected void doUpdate(Map<String, List<String>> devApps) 
             throws MojoFailureException {
 		try {
@@ -126,59 +243,60 @@ public class AppMojo extends GatewayAbstractMojo
 				return;
 			}
 
+            final AppInventory inventory = getInventory(devApps.keySet());
+            ReconcileEngine engine = getReconcileEngine(serverProfile);
             for (Map.Entry<String, List<String>> entry : devApps.entrySet()) {
 
-            	logger.info("Retrieving Apps of " + entry.getKey());
-                String developerId = URLEncoder.encode(entry.getKey(), "UTF-8");
-                existingApps = getApp(serverProfile, developerId);
-
-    	        for (String app : entry.getValue()) {
-    	        	String appName = getAppName(app);
-    	        	if (appName == null) {
-    	        		throw new IllegalArgumentException(
-    	        			"App does not have a name.\n" + app + "\n");
-    	        	}
-
-            		if (existingApps.contains(appName)) {
-                        switch (buildOption) {
-                            case update:
-                                logger.info("App \"" + appName + 
-                                                        "\" exists. Updating.");
-                                updateApp(serverProfile, developerId,
-                                                        appName, app);
-                                break;
-                            case create:
-                                logger.info("App \"" + appName + 
-                                                "\" already exists. Skipping.");
-                                break;
-                            case delete:
-                                logger.info("App \"" + appName + 
-                                                "\" already exists. Deleting.");
-                                deleteApp(serverProfile, developerId, appName);
-                                break;
-                            case sync:
-                                logger.info("App \"" + appName + 
-                                                "\" already exists. Deleting and recreating.");
-                                deleteApp(serverProfile, developerId, appName);
-                                logger.info("Creating App - " + appName);
-                                createApp(serverProfile, developerId, app);
-                                break;
-                        }
-    	        	} else {
-                        switch (buildOption) {
-                            case create:
-                            case sync:
-                            case update:
-                                logger.info("Creating App - " + appName);
-                                createApp(serverProfile, developerId, app);
-                                break;
-                            case delete:
-                                logger.info("App \"" + appName + 
-                                                "\" does not exist. Skipping.");
-                                break;
+                final String developer = entry.getKey();
+                final String developerId = URLEncoder.encode(entry.getKey(), "UTF-8");
+                existingApps = new ArrayList<String>(inventory.getApps(developer));
+
+                List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+                for (String app : entry.getValue()) {
+                    String appName = getAppName(app);
+                    if (appName == null) {
+                        throw new IllegalArgumentException(
+                            "App does not have a name.\n" + app + "\n");
+                    }
+                    items.add(new ReconcileItem(appName, app));
+                }
+
+                engine.reconcile(buildOption.name(), items, existingApps,
+                                                    new ReconcileHandler() {
+                    public String getResourceType() {
+                        return "App";
+                    }
+                    public String getScope() {
+                        return developerId;
+                    }
+                    public void create(ReconcileItem item) throws IOException {
+                        createApp(serverProfile, developerId, item.getPayload());
+                    }
+                    public void update(ReconcileItem item) throws IOException {
+                        updateApp(serverProfile, developerId, item.getName(),
+                                                            item.getPayload());
+                    }
+                    public void delete(ReconcileItem item) throws IOException {
+                        deleteApp(serverProfile, developerId, item.getName());
+                    }
+                    public Boolean exists(ReconcileItem item) throws IOException {
+                        return getApp(serverProfile, developerId).contains(item.getKey());
+                    }
+                    public String getRemote(ReconcileItem item) throws IOException {
+                        String remote = inventory.getPayload(developer, item.getName());
+                        if (remote != null) {
+                            return remote;
                         }
-    	        	}
-    			}
+                        return RestUtil.getPayload(RestUtil.getOrgConfig(serverProfile,
+                                "developers/" + developerId + "/apps", item.getName()));
+                    }
+                    public boolean isUnchanged(ReconcileItem item, String remote) {
+                        return PayloadComparator.equal(item.getPayload(),
+                                getComparablePayload(remote),
+                                PayloadComparator.ignoreUnset(item.getPayload(),
+                                                    APP_SERVER_FIELDS, "status"));
+                    }
+                });
             }
 		
 		} catch (IOException e) {
@@ -189,6 +307,44 @@ public class AppMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * Products of the credentials of an app in Apigee, as the top level
+	 * apiProducts list of developerApps.json
+	 */
+	static JsonArray getApiProducts(JsonObject remote) {
+		Set<String> products = new LinkedHashSet<String>();
+		JsonElement credentials = remote.get("credentials");
+		if (credentials != null && credentials.isJsonArray()) {
+			for (JsonElement credential : credentials.getAsJsonArray()) {
+				JsonElement apiProducts = credential.getAsJsonObject().get("apiProducts");
+				if (apiProducts == null || !apiProducts.isJsonArray()) continue;
+				for (JsonElement product : apiProducts.getAsJsonArray()) {
+					products.add(product.getAsJsonObject().get("apiproduct").getAsString());
+				}
+			}
+		}
+		JsonArray apiProducts = new JsonArray();
+		for (String product : products) {
+			apiProducts.add(new JsonPrimitive(product));
+		}
+		return apiProducts;
+	}
+
+	/**
+	 * App in Apigee with the apiProducts of its credentials, comparable
+	 * with the local payload
+	 */
+	static String getComparablePayload(String remote) {
+		if (remote == null) return null;
+		try {
+			JsonObject app = new JsonParser().parse(remote).getAsJsonObject();
+			app.add("apiProducts", getApiProducts(app));
+			return app.toString();
+		} catch (RuntimeException e) {
+			return remote;
+		}
+	}
+
 	/** 
 	 * Entry point for the mojo.
 	 */
@@ -305,38 +461,105 @@ public class AppMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getApp(ServerProfile profile, String developerId)
+    /**
+     * Apps of the developers from developers?expand=true and apps?expand=true,
+     * page by page. Returns false when the org listings are not available.
+     */
+    public static boolean getOrgApps(ServerProfile profile, Set<String> developers,
+                                     AppInventory inventory)
             throws IOException {
 
-        HttpResponse response = RestUtil.getOrgConfig(profile, 
-                                        "developers/" + developerId + "/apps");
-        if(response == null) return new ArrayList();
+        Set<String> emails = new HashSet<String>();
+        for (String developer : developers) {
+            emails.add(developer.toLowerCase());
+        }
+        /* developerId -> email of the configured developers */
+        Map<String, String> developerIds = new HashMap<String, String>();
+        /* pages start with the startKey entity, a page without new keys
+         * is the last one */
+        Set<String> seen = new HashSet<String>();
+        String startKey = null;
+        while (true) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("expand", "true");
+            params.put("count", String.valueOf(APP_PAGE_SIZE));
+            if (startKey != null) params.put("startKey", startKey);
+            JsonArray page = getPage(RestUtil.getOrgConfig(profile, "developers",
+                                                    params), "developer");
+            if (page == null) return false;
+            String last = null;
+            for (JsonElement element : page) {
+                JsonObject developer = element.getAsJsonObject();
+                String email = developer.get("email").getAsString();
+                if (!seen.add(email)) continue;
+                last = email;
+                if (emails.contains(email.toLowerCase())) {
+                    developerIds.put(developer.get("developerId").getAsString(), email);
+                }
+            }
+            if (last == null) break;
+            startKey = last;
+        }
+        logger.info("Listed " + developerIds.size() + " developer(s)");
+
+        seen.clear();
+        startKey = null;
+        int count = 0;
+        while (true) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("expand", "true");
+            params.put("rows", String.valueOf(APP_PAGE_SIZE));
+            if (startKey != null) params.put("startKey", startKey);
+            JsonArray page = getPage(RestUtil.getOrgConfig(profile, "apps",
+                                                    params), "app");
+            if (page == null) return false;
+            String last = null;
+            for (JsonElement element : page) {
+                JsonObject app = element.getAsJsonObject();
+                String appId = app.get("appId").getAsString();
+                if (!seen.add(appId)) continue;
+                last = appId;
+                JsonElement developerId = app.get("developerId");
+                String email = (developerId == null) ? null :
+                                    developerIds.get(developerId.getAsString());
+                if (email != null) {
+                    inventory.add(email, app.get("name").getAsString(), app.toString());
+                    count++;
+                }
+            }
+            if (last == null) break;
+            startKey = last;
+        }
+        logger.info("Listed " + count + " app(s) of the configured developers");
+        return true;
+    }
 
-        JSONArray apps = null;
+    /**
+     * Entities of an expanded listing, null when the response is not one
+     */
+    private static JsonArray getPage(HttpResponse response, String field)
+            throws IOException {
+        if (response == null) return null;
+        JsonElement payload;
+        Reader reader = new InputStreamReader(response.getContent(), "UTF-8");
         try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"apps\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            apps    = (JSONArray)obj1.get("apps");
-
-        } catch (ParseException pe){
-            logger.error("Get App parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Apps error " + e.getMessage());
+            payload = new JsonParser().parse(reader);
+        } catch (JsonParseException e) {
             throw new IOException(e.getMessage());
+        } finally {
+            reader.close();
         }
+        if (!payload.isJsonObject()) return null;
+        JsonElement page = payload.getAsJsonObject().get(field);
+        return (page != null && page.isJsonArray()) ? page.getAsJsonArray() : null;
+    }
 
-        return apps;
-    }	
+    public static Set<String> getApp(ServerProfile profile, String developerId)
+            throws IOException {
+
+        return RestUtil.listOrgConfig(profile,
+                                "developers/" + developerId + "/apps", false).readAll();
+    }
 }
 
 
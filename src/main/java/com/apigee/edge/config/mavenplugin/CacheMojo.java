@@ -15,6 +15,8 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -35,16 +37,13 @@ import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import java.util.ArrayList;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create cache in Apigee EDGE
@@ -117,7 +116,7 @@ public class CacheMojo extends GatewayAbstractMojo
 	 */
 	protected void doUpdate(List<String> caches) throws MojoFailureException {
 		try {
-			List existingCaches = null;
+			Set<String> existingCaches = null;
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -129,52 +128,38 @@ public class CacheMojo extends GatewayAbstractMojo
                                                 serverProfile.getEnvironment());
 			existingCaches = getCache(serverProfile);
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
 	        for (String cache : caches) {
 	        	String cacheName = getCacheName(cache);
 	        	if (cacheName == null) {
 	        		throw new IllegalArgumentException(
 	        			"Cache does not have a name.\n" + cache + "\n");
 	        	}
-
-        		if (existingCaches.contains(cacheName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Cache \"" + cacheName + 
-                                                    "\" exists. Updating.");
-                            updateCache(serverProfile, cacheName, cache);
-                            break;
-                        case create:
-                            logger.info("Cache \"" + cacheName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Cache \"" + cacheName + 
-                                                "\" already exists. Deleting.");
-                            deleteCache(serverProfile, cacheName);
-                            break;
-                        case sync:
-                            logger.info("Cache \"" + cacheName + 
-                                                "\" already exists. Deleting and recreating.");
-                            deleteCache(serverProfile, cacheName);
-                            logger.info("Creating Cache - " + cacheName);
-                            createCache(serverProfile, cache);
-                            break;
-                    }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Cache - " + cacheName);
-                            createCache(serverProfile, cache);
-                            break;
-                        case delete:
-                            logger.info("Cache \"" + cacheName + 
-                                            "\" does not exist. Skipping.");
-                            break;
-                    }
-	        	}
+                items.add(new ReconcileItem(cacheName, cache));
 			}
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingCaches, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Cache";
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createCache(serverProfile, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateCache(serverProfile, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteCache(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getCache(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getEnvConfig(serverProfile, "caches", item.getName()));
+                }
+            });
 		
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
@@ -290,36 +275,11 @@ public class CacheMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getCache(ServerProfile profile)
+    public static Set<String> getCache(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getEnvConfig(profile, "caches");
-        if(response == null) return new ArrayList();
-        JSONArray caches = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"caches\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            caches    = (JSONArray)obj1.get("caches");
-
-        } catch (ParseException pe){
-            logger.error("Get Cache parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Cache error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return caches;
-    }	
+        return RestUtil.listEnvConfig(profile, "caches").readAll();
+    }
 }
 
 
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.mavenplugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcilePlan;
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
+
+/**
+ * Goal to apply all config types for apigee.config.options in one execution.
+ *
+ * Config types are ordered by the dependencies declared in getGraph (apps
+ * after developers and api products); a type starts as soon as the types it
+ * depends on are done, so independent types run concurrently. Deletes run in
+ * the reverse order. All types share one profile, i.e. one access token and
+ * one HTTP transport, and edge.json is parsed once.
+ *
+ * A failed type does not stop independent types; the types depending on it
+ * are skipped and the build fails at the end.
+ *
+ * @goal deployAll
+ * @phase install
+ */
+public class DeployAllMojo extends GatewayAbstractMojo
+{
+	static Logger logger = LoggerFactory.getLogger(DeployAllMojo.class);
+	public static final String ____ATTENTION_MARKER____ =
+	"************************************************************************";
+
+	/**
+	 * Config type, the goal applying it and the types it depends on
+	 */
+	protected static class Node {
+		final String name;
+		final GatewayAbstractMojo goal;
+		final Set<String> dependencies = new HashSet<String>();
+		boolean completed;
+		long elapsed;
+
+		Node(String name, GatewayAbstractMojo goal, String... dependencies) {
+			this.name = name;
+			this.goal = goal;
+			this.dependencies.addAll(Arrays.asList(dependencies));
+		}
+	}
+
+	public DeployAllMojo() {
+		super();
+	}
+
+	/**
+	 * Config types and their dependencies for create/update/sync
+	 */
+	protected List<Node> getGraph() {
+		return Arrays.asList(
+			new Node("caches", new CacheMojo()),
+			new Node("targetservers", new TargetServerMojo()),
+			new Node("kvms", new KVMMojo()),
+			new Node("resourcefiles", new ResourceFileMojo()),
+			new Node("flowhooks", new FlowHookMojo()),
+			new Node("maskconfigs", new MaskConfigMojo()),
+			new Node("apiproducts", new APIProductMojo()),
+			new Node("developers", new DeveloperMojo()),
+			new Node("apps", new AppMojo(), "developers", "apiproducts")
+		);
+	}
+
+	/**
+	 * Nodes by name; for delete each node depends on its dependents instead
+	 */
+	protected Map<String, Node> getOrder(List<Node> graph, boolean delete) {
+		Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+		for (Node node : graph) {
+			nodes.put(node.name, node);
+		}
+		if (!delete) {
+			return nodes;
+		}
+		Map<String, Node> reversed = new LinkedHashMap<String, Node>();
+		for (Node node : graph) {
+			reversed.put(node.name, new Node(node.name, node.goal));
+		}
+		for (Node node : graph) {
+			for (String dependency : node.dependencies) {
+				reversed.get(dependency).dependencies.add(node.name);
+			}
+		}
+		return reversed;
+	}
+
+	/**
+	 * Entry point for the mojo.
+	 */
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (super.isSkip()) {
+			getLog().info("Skipping");
+			return;
+		}
+
+		if (getOptions() == null || getOptions().equals("none")) {
+			logger.info("Skipping all config types (default action)");
+			return;
+		}
+
+		ReconcilePlan plan = ReconcilePlan.start(getPluginContext());
+		ServerProfile profile = shareProfile();
+		Map<String, Node> nodes = getOrder(getGraph(),
+										getOptions().equals("delete"));
+		for (Node node : nodes.values()) {
+			for (String dependency : node.dependencies) {
+				if (!nodes.containsKey(dependency)) {
+					throw new MojoExecutionException("Config type " + node.name
+								+ " depends on unknown type " + dependency);
+				}
+			}
+			configure(node.goal);
+		}
+
+		int threads = getConfigGoalThreads() > 0 ?
+							getConfigGoalThreads() : nodes.size();
+		WorkerPool pool = new WorkerPool(threads,
+							profile.getConfigThreadType(), "deploy");
+		BlockingQueue<Node> finished = new LinkedBlockingQueue<Node>();
+		final List<String> failures =
+				Collections.synchronizedList(new ArrayList<String>());
+		Set<String> pending = new HashSet<String>(nodes.keySet());
+		Set<String> done = new HashSet<String>();
+		Set<String> failed = new HashSet<String>();
+		int running = 0;
+
+		try {
+			while (!pending.isEmpty() || running > 0) {
+				/* start every type whose dependencies are done, skip the
+				 * types depending on a failed or skipped type */
+				boolean changed = true;
+				while (changed) {
+					changed = false;
+					for (Node node : nodes.values()) {
+						if (!pending.contains(node.name)) continue;
+						Set<String> missing = new HashSet<String>(node.dependencies);
+						missing.retainAll(failed);
+						if (!missing.isEmpty()) {
+							logger.error("Skipping " + node.name + ", depends on "
+									+ missing + " which did not complete");
+							pending.remove(node.name);
+							failed.add(node.name);
+							changed = true;
+						} else if (done.containsAll(node.dependencies)) {
+							pending.remove(node.name);
+							running++;
+							pool.submit(run(node, finished, failures));
+						}
+					}
+				}
+
+				if (running == 0) {
+					if (!pending.isEmpty()) {
+						throw new MojoExecutionException(
+									"Dependency cycle between " + pending);
+					}
+					break;
+				}
+
+				Node node = finished.take();
+				running--;
+				if (node.completed) {
+					done.add(node.name);
+				} else {
+					failed.add(node.name);
+				}
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoFailureException("Interrupted while applying config");
+		}
+
+		logger.info(____ATTENTION_MARKER____);
+		for (Node node : nodes.values()) {
+			logger.info(node.name + ": " + (done.contains(node.name) ?
+						"done in " + node.elapsed + " ms" : "not completed"));
+		}
+		if (isConfigPlan()) {
+			plan.report(logger);
+		}
+		logger.info(____ATTENTION_MARKER____);
+
+		if (!failures.isEmpty()) {
+			for (String failure : failures) {
+				logger.error(failure);
+			}
+			throw new MojoFailureException(failures.size()
+						+ " config type(s) failed: " + failures);
+		}
+	}
+
+	/**
+	 * Runs the goal of a node and hands the node back to the scheduler
+	 */
+	private Callable<Void> run(final Node node,
+							   final BlockingQueue<Node> finished,
+							   final List<String> failures) {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				long start = System.currentTimeMillis();
+				try {
+					node.goal.execute();
+					node.completed = true;
+				} catch (Exception e) {
+					failures.add(node.name + ": " + e.getMessage());
+				} finally {
+					node.elapsed = System.currentTimeMillis() - start;
+					finished.put(node);
+				}
+				return null;
+			}
+		};
+	}
+}
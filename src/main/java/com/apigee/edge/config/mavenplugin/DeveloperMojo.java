@@ -15,6 +15,9 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.PayloadComparator;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -35,16 +38,13 @@ import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import java.util.ArrayList;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create Developer in Apigee EDGE
@@ -116,7 +116,7 @@ public class DeveloperMojo extends GatewayAbstractMojo
 	protected void doUpdate(List<String> developers) 
             throws MojoFailureException {
 		try {
-			List existingDevelopers = null;
+			Set<String> existingDevelopers = null;
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -127,54 +127,45 @@ public class DeveloperMojo extends GatewayAbstractMojo
 			logger.info("Retrieving existing Developers");
 			existingDevelopers = getDeveloper(serverProfile);
 
-	        for (String developer : developers) {
-	        	String developerId = getDeveloperName(developer);
-	        	if (developerId == null) {
-	        		throw new IllegalArgumentException(
-	        			"Developer does not have an id.\n" + developer + "\n");
-	        	}
-
-        		if (existingDevelopers.contains(developerId)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Developer \"" + developerId + 
-                                                    "\" exists. Updating.");
-                            updateDeveloper(serverProfile,
-                                                    developerId, developer);
-                            break;
-                        case create:
-                            logger.info("Developer \"" + developerId + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Developer \"" + developerId + 
-                                    "\" already exists. Deleting.");
-                            deleteDeveloper(serverProfile, developerId);
-                            break;
-                        case sync:
-                            logger.info("Developer \"" + developerId + 
-                                    "\" already exists. Deleting and recreating.");
-                            deleteDeveloper(serverProfile, developerId);
-                            logger.info("Creating Developer - " + developerId);
-                            createDeveloper(serverProfile, developer);
-                                break;
-                    }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Developer - " + developerId);
-                            createDeveloper(serverProfile, developer);
-                            break;
-                        case delete:
-                            logger.info("Developer \"" + developerId + 
-                                        "\" does not exist. Skipping.");
-                            break;
-                    }
-	        	}
-			}
-		
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            for (String developer : developers) {
+                String developerId = getDeveloperName(developer);
+                if (developerId == null) {
+                    throw new IllegalArgumentException(
+                       "Developer does not have an id.\n" + developer + "\n");
+                }
+                items.add(new ReconcileItem(developerId, developer));
+            }
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingDevelopers, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Developer";
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createDeveloper(serverProfile, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateDeveloper(serverProfile, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteDeveloper(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getDeveloper(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getOrgConfig(serverProfile, "developers", item.getName()));
+                }
+                public boolean isUnchanged(ReconcileItem item, String remote) {
+                    return PayloadComparator.equal(item.getPayload(), remote,
+                            PayloadComparator.ignoreUnset(item.getPayload(),
+                                    PayloadComparator.serverFieldsAnd("developerId",
+                                            "organizationName", "apps"), "status"));
+                }
+            });
+        
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
 														 e.getMessage());
@@ -294,36 +285,11 @@ public class DeveloperMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getDeveloper(ServerProfile profile)
+    public static Set<String> getDeveloper(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getOrgConfig(profile, "developers");
-        if(response == null) return new ArrayList();
-        JSONArray developers = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"developers\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            developers    = (JSONArray)obj1.get("developers");
-
-        } catch (ParseException pe){
-            logger.error("Get Developer parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Developer error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return developers;
-    }	
+        return RestUtil.listOrgConfig(profile, "developers", true).readAll();
+    }
 }
 
 
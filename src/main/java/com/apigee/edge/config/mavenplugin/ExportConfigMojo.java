@@ -0,0 +1,567 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.mavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.mavenplugin.export.ConfigFileWriter;
+import com.apigee.edge.config.mavenplugin.reconcile.PayloadComparator;
+import com.apigee.edge.config.rest.RestUtil;
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
+import com.google.api.client.http.HttpResponse;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Goal to export the config of an org to apigee.config.exportDir in the
+ * apigee.config.dir layout, to bring an org under config or audit drift
+ *
+ * org/          apiProducts, developers, developerApps, kvms, maskconfigs,
+ *               resourcefiles
+ * env/{env}/    caches, targetServers, flowhooks, kvms, resourcefiles
+ * api/{api}/    kvms, maskconfigs, resourcefiles (latest revision)
+ *
+ * Entities are read on the worker pool (apigee.config.threads) and streamed
+ * to the files; fields set by Apigee are left out. Resource file content is
+ * written to resourceFiles/{type}/{name} next to resourcefiles.json.
+ *
+ * @goal exportConfig
+ * @phase install
+ */
+
+public class ExportConfigMojo extends GatewayAbstractMojo
+{
+	static Logger logger = LoggerFactory.getLogger(ExportConfigMojo.class);
+	public static final String ____ATTENTION_MARKER____ =
+	"************************************************************************";
+
+	private static final Set<String> DEVELOPER_FIELDS =
+			PayloadComparator.serverFieldsAnd("developerId", "organizationName", "apps");
+
+	private static final Set<String> APP_FIELDS =
+			PayloadComparator.serverFieldsAnd("appId", "developerId", "credentials",
+												"appFamily");
+
+	private ServerProfile serverProfile;
+
+	private String exportDir;
+
+	private final List<ConfigFileWriter> files =
+			Collections.synchronizedList(new ArrayList<ConfigFileWriter>());
+
+	private final List<String> failures =
+			Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * An entity to read and write to its file at the index it was listed at
+	 */
+	abstract class Fetch {
+		final ConfigFileWriter file;
+		final int index;
+		final String name;
+
+		Fetch(ConfigFileWriter file, int index, String name) {
+			this.file = file;
+			this.index = index;
+			this.name = name;
+		}
+
+		abstract void fetch() throws Exception;
+
+		/**
+		 * Writes the entity, skips it when it was deleted since the listing
+		 */
+		void write(JsonObject entity) throws IOException {
+			if (entity == null) {
+				file.skip(index);
+			} else {
+				file.write(index, entity);
+			}
+		}
+	}
+
+	public ExportConfigMojo() {
+		super();
+
+	}
+
+	public void init() throws MojoFailureException {
+		try {
+			logger.info(____ATTENTION_MARKER____);
+			logger.info("Apigee Export Config");
+			logger.info(____ATTENTION_MARKER____);
+
+			serverProfile = super.getProfile();
+			exportDir = super.getExportDir();
+			logger.debug("exportDir " + exportDir);
+		} catch (RuntimeException e) {
+			throw e;
+		}
+
+	}
+
+	/**
+	 * Lists the entities of each config type, in parallel
+	 */
+	protected List<Fetch> doList(final List<String> apis)
+			throws MojoFailureException {
+		List<Callable<List<Fetch>>> listings = new ArrayList<Callable<List<Fetch>>>();
+		listings.add(new Callable<List<Fetch>>() {
+			public List<Fetch> call() throws Exception {
+				return listOrgEntities("apiProducts", "apiproducts",
+						APIProductMojo.getAPIProduct(serverProfile));
+			}
+		});
+		listings.add(new Callable<List<Fetch>>() {
+			public List<Fetch> call() throws Exception {
+				return listDevelopers(DeveloperMojo.getDeveloper(serverProfile));
+			}
+		});
+		listings.add(new Callable<List<Fetch>>() {
+			public List<Fetch> call() throws Exception {
+				return listOrgEntities("maskconfigs", "maskconfigs",
+						MaskConfigMojo.getOrgMaskConfig(serverProfile));
+			}
+		});
+		listings.add(new Callable<List<Fetch>>() {
+			public List<Fetch> call() throws Exception {
+				return listResourceFiles("org", null, null);
+			}
+		});
+		if (serverProfile.getEnvironment() != null) {
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					return listEnvEntities("caches", "caches",
+							CacheMojo.getCache(serverProfile));
+				}
+			});
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					return listEnvEntities("targetServers", "targetservers",
+							TargetServerMojo.getTarget(serverProfile));
+				}
+			});
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					return listFlowhooks(FlowHookMojo.getFlowhook(serverProfile));
+				}
+			});
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					return listResourceFiles("env", null, null);
+				}
+			});
+		}
+		for (final String api : apis) {
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					return listAPIMaskConfigs(api,
+							MaskConfigMojo.getAPIMaskConfig(serverProfile, api));
+				}
+			});
+			listings.add(new Callable<List<Fetch>>() {
+				public List<Fetch> call() throws Exception {
+					String revision = getLatestRevision(api);
+					if (revision == null) {
+						return Collections.emptyList();
+					}
+					return listResourceFiles("api", api, revision);
+				}
+			});
+		}
+
+		List<Future<List<Fetch>>> futures = new ArrayList<Future<List<Fetch>>>();
+		WorkerPool pool = WorkerPool.forProfile(serverProfile, "export-list");
+		try {
+			for (Callable<List<Fetch>> listing : listings) {
+				futures.add(pool.submit(listing));
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoFailureException("Interrupted while exporting config");
+		}
+
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		for (Future<List<Fetch>> future : futures) {
+			try {
+				fetches.addAll(future.get());
+			} catch (ExecutionException e) {
+				logger.error("List error " + e.getCause().getMessage());
+				failures.add(String.valueOf(e.getCause().getMessage()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoFailureException("Interrupted while exporting config");
+			}
+		}
+		return fetches;
+	}
+
+	/**
+	 * Reads and writes the entities, in parallel
+	 */
+	protected void doFetch(List<Fetch> fetches) throws MojoFailureException {
+		final int total = fetches.size();
+		final int step = Math.max(1, total / 10);
+		final AtomicInteger done = new AtomicInteger();
+		WorkerPool pool = WorkerPool.forProfile(serverProfile, "export");
+		try {
+			for (final Fetch fetch : fetches) {
+				pool.submit(new Callable<Void>() {
+					public Void call() {
+						try {
+							fetch.fetch();
+						} catch (Exception e) {
+							logger.error(fetch.name + " export error " + e.getMessage());
+							failures.add(fetch.file.getFile().getName() + " " +
+											fetch.name + ": " + e.getMessage());
+							try {
+								fetch.file.skip(fetch.index);
+							} catch (IOException ioe) {
+								failures.add(fetch.file.getFile() + ": " + ioe.getMessage());
+							}
+						}
+						int count = done.incrementAndGet();
+						if (count % step == 0 || count == total) {
+							logger.info("Exported " + count + "/" + total + " entities");
+						}
+						return null;
+					}
+				});
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoFailureException("Interrupted while exporting config");
+		}
+	}
+
+	private ConfigFileWriter open(String path, boolean keyed) throws IOException {
+		ConfigFileWriter file = new ConfigFileWriter(new File(exportDir, path), keyed);
+		files.add(file);
+		return file;
+	}
+
+	private List<Fetch> listOrgEntities(String config, final String resource,
+										Collection<String> names) throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		if (names == null || names.isEmpty()) return fetches;
+		String[] list = names.toArray(new String[names.size()]);
+		ConfigFileWriter file = open("org" + File.separator + config + ".json", false);
+		for (int i = 0; i < list.length; i++) {
+			fetches.add(new Fetch(file, i, list[i]) {
+				void fetch() throws Exception {
+					write(getEntity(RestUtil.getOrgConfig(
+						serverProfile, resource, name), PayloadComparator.SERVER_FIELDS));
+				}
+			});
+		}
+		return fetches;
+	}
+
+	private List<Fetch> listEnvEntities(String config, final String resource,
+										Collection<String> names) throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		if (names == null || names.isEmpty()) return fetches;
+		String[] list = names.toArray(new String[names.size()]);
+		ConfigFileWriter file = open(getEnvPath() + config + ".json", false);
+		for (int i = 0; i < list.length; i++) {
+			fetches.add(new Fetch(file, i, list[i]) {
+				void fetch() throws Exception {
+					write(getEntity(RestUtil.getEnvConfig(
+						serverProfile, resource, name), PayloadComparator.SERVER_FIELDS));
+				}
+			});
+		}
+		return fetches;
+	}
+
+	private List<Fetch> listAPIMaskConfigs(final String api, Collection<String> names)
+			throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		if (names == null || names.isEmpty()) return fetches;
+		String[] list = names.toArray(new String[names.size()]);
+		ConfigFileWriter file = open(getAPIPath(api) + "maskconfigs.json", false);
+		for (int i = 0; i < list.length; i++) {
+			fetches.add(new Fetch(file, i, list[i]) {
+				void fetch() throws Exception {
+					write(getEntity(RestUtil.getAPIConfig(serverProfile,
+						api, "maskconfigs", name), PayloadComparator.SERVER_FIELDS));
+				}
+			});
+		}
+		return fetches;
+	}
+
+	/**
+	 * Developers and, keyed by developer, their apps
+	 */
+	private List<Fetch> listDevelopers(Collection<String> names) throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		if (names == null || names.isEmpty()) return fetches;
+		String[] list = names.toArray(new String[names.size()]);
+		ConfigFileWriter developers = open("org" + File.separator + "developers.json", false);
+		ConfigFileWriter apps = open("org" + File.separator + "developerApps.json", true);
+		for (int i = 0; i < list.length; i++) {
+			fetches.add(new Fetch(developers, i, list[i]) {
+				void fetch() throws Exception {
+					write(getEntity(RestUtil.getOrgConfig(
+						serverProfile, "developers", name), DEVELOPER_FIELDS));
+				}
+			});
+			fetches.add(new Fetch(apps, i, list[i]) {
+				void fetch() throws Exception {
+					List<JsonElement> elements = new ArrayList<JsonElement>();
+					for (JsonObject app : ExportKeysMojo.getAppObjects(serverProfile, name)) {
+						elements.add(getApp(app));
+					}
+					file.write(index, name, elements);
+				}
+			});
+		}
+		return fetches;
+	}
+
+	/**
+	 * Flow hooks attached to a shared flow
+	 */
+	private List<Fetch> listFlowhooks(Collection<String> names) throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		if (names == null || names.isEmpty()) return fetches;
+		String[] list = names.toArray(new String[names.size()]);
+		ConfigFileWriter file = open(getEnvPath() + "flowhooks.json", false);
+		for (int i = 0; i < list.length; i++) {
+			fetches.add(new Fetch(file, i, list[i]) {
+				void fetch() throws Exception {
+					JsonObject remote = getEntity(RestUtil.getEnvConfig(
+						serverProfile, "flowhooks", name), PayloadComparator.SERVER_FIELDS);
+					if (remote == null || !remote.has("sharedFlow")) {
+						file.skip(index);
+						return;
+					}
+					JsonObject flowhook = new JsonObject();
+					flowhook.addProperty("name", name);
+					if (remote.has("continueOnError")) {
+						flowhook.add("continueOnError", remote.get("continueOnError"));
+					}
+					flowhook.add("sharedFlow", remote.get("sharedFlow"));
+					file.write(index, flowhook);
+				}
+			});
+		}
+		return fetches;
+	}
+
+	/**
+	 * Resource files of the org, the environment or an API revision
+	 */
+	private List<Fetch> listResourceFiles(final String scope, final String api,
+										  final String revision) throws IOException {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		Set<String> names = ResourceFileMojo.getExistingResourceFile(serverProfile, scope,
+				api != null ? api + "/revisions/" + revision : null);
+		if (names.isEmpty()) return fetches;
+		String[] keys = names.toArray(new String[names.size()]);
+		final String path = scope.equals("org") ? "org" + File.separator :
+							scope.equals("env") ? getEnvPath() : getAPIPath(api);
+		ConfigFileWriter file = open(path + "resourcefiles.json", false);
+		for (int i = 0; i < keys.length; i++) {
+			String key = keys[i];
+			final String name = key.substring(0, key.lastIndexOf('_'));
+			final String type = key.substring(key.lastIndexOf('_') + 1);
+			fetches.add(new Fetch(file, i, name) {
+				void fetch() throws Exception {
+					HttpResponse response;
+					if (scope.equals("org")) {
+						response = RestUtil.getOrgConfig(serverProfile,
+								"resourcefiles/" + type, name);
+					} else if (scope.equals("env")) {
+						response = RestUtil.getEnvConfig(serverProfile,
+								"resourcefiles/" + type, name);
+					} else {
+						response = RestUtil.getAPIConfig(serverProfile, api,
+								"revisions/" + revision + "/resourcefiles/" + type, name);
+					}
+					if (response == null) {
+						file.skip(index);
+						return;
+					}
+					File content = new File(exportDir, path + "resourceFiles" +
+								File.separator + type + File.separator + name);
+					copy(response, content);
+					JsonObject resourceFile = new JsonObject();
+					resourceFile.addProperty("name", name);
+					resourceFile.addProperty("type", type);
+					if (revision != null) {
+						resourceFile.addProperty("revision", revision);
+					}
+					resourceFile.addProperty("file", content.getPath());
+					file.write(index, resourceFile);
+				}
+			});
+		}
+		return fetches;
+	}
+
+	private String getEnvPath() {
+		return "env" + File.separator + serverProfile.getEnvironment() + File.separator;
+	}
+
+	private static String getAPIPath(String api) {
+		return "api" + File.separator + api + File.separator;
+	}
+
+	/**
+	 * Highest deployed or undeployed revision of an API
+	 */
+	private String getLatestRevision(String api) throws IOException {
+		HttpResponse response = RestUtil.getOrgConfig(serverProfile, "apis", api);
+		if (response == null) return null;
+		JsonObject proxy = new JsonParser().parse(response.parseAsString())
+												.getAsJsonObject();
+		JsonElement revisions = proxy.get("revision");
+		String latest = null;
+		if (revisions != null && revisions.isJsonArray()) {
+			for (JsonElement revision : revisions.getAsJsonArray()) {
+				if (latest == null || Integer.parseInt(revision.getAsString())
+											> Integer.parseInt(latest)) {
+					latest = revision.getAsString();
+				}
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * The entity without the fields set by Apigee, null when not found
+	 */
+	private static JsonObject getEntity(HttpResponse response, Set<String> ignored)
+			throws IOException {
+		if (response == null) return null;
+		JsonObject entity = new JsonParser().parse(response.parseAsString())
+												.getAsJsonObject();
+		for (String field : ignored) {
+			entity.remove(field);
+		}
+		return entity;
+	}
+
+	/**
+	 * App as in developerApps.json, its products taken from the credentials
+	 */
+	private static JsonObject getApp(JsonObject remote) {
+		JsonArray apiProducts = AppMojo.getApiProducts(remote);
+		for (String field : APP_FIELDS) {
+			remote.remove(field);
+		}
+		remote.add("apiProducts", apiProducts);
+		return remote;
+	}
+
+	private static void copy(HttpResponse response, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		InputStream in = response.getContent();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			out.close();
+			in.close();
+		}
+	}
+
+	/**
+	 * Entry point for the mojo.
+	 */
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (super.isSkip()) {
+			getLog().info("Skipping");
+			return;
+		}
+
+		Logger logger = LoggerFactory.getLogger(ExportConfigMojo.class);
+
+		try {
+
+			init();
+
+			if (exportDir == null || exportDir.length() == 0) {
+				throw new MojoFailureException("Please provide the directory where the config should be exported (-Dapigee.config.exportDir)");
+			}
+
+			List<String> apis = ExportKVMMojo.getAPIs(serverProfile);
+			try {
+				doFetch(doList(apis));
+			} finally {
+				for (ConfigFileWriter file : files) {
+					file.close();
+				}
+			}
+
+			List<ExportKVMMojo.Target> kvms = ExportKVMMojo.getTargets(serverProfile,
+						Arrays.asList("org", "env", "api"), apis);
+			if (kvms.size() > 0) {
+				ExportKVMMojo.export(serverProfile, new File(exportDir), kvms, false);
+			}
+
+			if (!failures.isEmpty()) {
+				throw new MojoFailureException("Apigee network call error. " +
+						failures.size() + " entities could not be exported: " + failures);
+			}
+			int count = 0;
+			for (ConfigFileWriter file : files) {
+				count += file.getCount();
+			}
+			logger.info("Exported " + count + " entities and " + kvms.size() +
+						" KVM(s) to " + exportDir);
+
+		} catch (IOException e) {
+			throw new MojoFailureException("Apigee network call error " +
+														 e.getMessage());
+		} catch (MojoFailureException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		}
+	}
+}
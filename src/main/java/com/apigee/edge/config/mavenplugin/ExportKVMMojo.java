@@ -0,0 +1,448 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.mavenplugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.mavenplugin.kvm.KvmApi;
+import com.apigee.edge.config.mavenplugin.kvm.KvmEnv;
+import com.apigee.edge.config.mavenplugin.kvm.KvmOperations;
+import com.apigee.edge.config.mavenplugin.kvm.KvmOrg;
+import com.apigee.edge.config.mavenplugin.kvm.KvmValueObject;
+import com.apigee.edge.config.rest.RestUtil;
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Goal to export KVMs with their entries to apigee.config.exportDir
+ * scope: org, env, api
+ *
+ * ndjson - kvms.ndjson, one line per entry
+ * config - org/kvms.json, env/{env}/kvms.json and api/{api}/kvms.json in
+ *          the apigee.config.dir layout
+ *
+ * Maps are exported in parallel (apigee.config.threads) and streamed to
+ * the files, so memory does not grow with the size of the maps.
+ *
+ * @goal exportKvms
+ * @phase install
+ */
+
+public class ExportKVMMojo extends GatewayAbstractMojo
+{
+	static Logger logger = LoggerFactory.getLogger(ExportKVMMojo.class);
+	public static final String ____ATTENTION_MARKER____ =
+	"************************************************************************";
+
+	enum FORMAT {
+		ndjson, config
+	}
+
+	FORMAT format = FORMAT.ndjson;
+
+	private ServerProfile serverProfile;
+
+	private String exportDir;
+
+	private List<String> scopes;
+
+	/**
+	 * A map to export
+	 */
+	static class Target {
+		String scope;
+		String parent; // env or api name
+		String name;
+		KvmOperations kvm;
+		File part;
+
+		Target(String scope, String parent, String name, KvmOperations kvm) {
+			this.scope = scope;
+			this.parent = parent;
+			this.name = name;
+			this.kvm = kvm;
+		}
+
+		String getPath() {
+			if (scope.equals("org")) return "org";
+			return scope + File.separator + parent;
+		}
+	}
+
+	public ExportKVMMojo() {
+		super();
+
+	}
+
+	public void init() throws MojoFailureException {
+		try {
+			logger.info(____ATTENTION_MARKER____);
+			logger.info("Apigee Export KVMs");
+			logger.info(____ATTENTION_MARKER____);
+
+			serverProfile = super.getProfile();
+			exportDir = super.getExportDir();
+			if (super.getKvmExportFormat() != null) {
+				format = FORMAT.valueOf(super.getKvmExportFormat());
+			}
+			scopes = Arrays.asList(super.getKvmExportScope().split("\\s*,\\s*"));
+			logger.debug("exportDir " + exportDir);
+			logger.debug("Export format " + format.name());
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("Invalid apigee.kvm.exportFormat provided");
+		} catch (RuntimeException e) {
+			throw e;
+		}
+
+	}
+
+	protected List<Target> getTargets() throws IOException {
+		return getTargets(serverProfile, scopes,
+				scopes.contains("api") ? getAPIs(serverProfile) : null);
+	}
+
+	/**
+	 * Maps of the scopes, api maps of the given APIs
+	 */
+	static List<Target> getTargets(ServerProfile serverProfile,
+								   List<String> scopes, List<String> apis)
+			throws IOException {
+		List<Target> targets = new ArrayList<Target>();
+		if (scopes.contains("org")) {
+			for (Object name : KVMMojo.getOrgKVM(serverProfile)) {
+				targets.add(new Target("org", null, (String) name, new KvmOrg()));
+			}
+		}
+		if (scopes.contains("env") && serverProfile.getEnvironment() != null) {
+			for (Object name : KVMMojo.getEnvKVM(serverProfile)) {
+				targets.add(new Target("env", serverProfile.getEnvironment(),
+										(String) name, new KvmEnv()));
+			}
+		}
+		if (scopes.contains("api")) {
+			for (String api : apis) {
+				for (Object name : KVMMojo.getAPIKVM(serverProfile, api)) {
+					targets.add(new Target("api", api, (String) name, new KvmApi()));
+				}
+			}
+		}
+		return targets;
+	}
+
+	protected void doExport(List<Target> targets)
+			throws MojoFailureException, IOException {
+		export(serverProfile, new File(exportDir), targets,
+								format == FORMAT.ndjson);
+	}
+
+	/**
+	 * Exports the maps to dir, as kvms.ndjson or as the kvms.json files of
+	 * the apigee.config.dir layout. The files of a previous export are only
+	 * replaced when all maps were exported.
+	 */
+	static void export(final ServerProfile serverProfile, File dir,
+					   final List<Target> targets, boolean lines)
+			throws MojoFailureException, IOException {
+		dir.mkdirs();
+		final File partsDir = new File(dir, ".kvms");
+		File ndjsonFile = new File(dir, "kvms.ndjson");
+		File ndjsonTmp = new File(ndjsonFile.getPath() + ".tmp");
+		final Writer ndjson = lines ?
+				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+						ndjsonTmp), "UTF-8")) : null;
+		final List<String> failures =
+				Collections.synchronizedList(new ArrayList<String>());
+
+		WorkerPool pool = WorkerPool.forProfile(serverProfile, "kvm-export");
+		try {
+			for (int i = 0; i < targets.size(); i++) {
+				final Target target = targets.get(i);
+				if (ndjson == null) {
+					partsDir.mkdirs();
+					target.part = new File(partsDir, i + ".json");
+				}
+				pool.submit(new Callable<Void>() {
+					public Void call() {
+						ConfigSink sink = null;
+						try {
+							logger.info("Exporting " + target.scope + " KVM " +
+									(target.parent != null ? target.parent + "/" : "") +
+									target.name);
+							KvmValueObject kvm = new KvmValueObject(serverProfile,
+									target.scope.equals("api") ? target.parent : null,
+									target.name, null);
+							if (ndjson != null) {
+								target.kvm.export(kvm, new LineSink(target, ndjson));
+							} else {
+								sink = new ConfigSink(target.part);
+								target.kvm.export(kvm, sink);
+							}
+						} catch (Exception e) {
+							logger.error("KVM " + target.name + " export error " +
+														e.getMessage());
+							failures.add(target.scope + " " + target.name +
+														": " + e.getMessage());
+						} finally {
+							if (sink != null) {
+								sink.close();
+							}
+						}
+						return null;
+					}
+				});
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoFailureException("Interrupted while exporting KVMs");
+		} finally {
+			if (ndjson != null) {
+				ndjson.close();
+				if (!failures.isEmpty() || Thread.currentThread().isInterrupted()) {
+					ndjsonTmp.delete();
+				}
+			}
+		}
+
+		if (failures.isEmpty()) {
+			if (ndjson != null) {
+				if (ndjsonFile.exists() && !ndjsonFile.delete()) {
+					throw new IOException("Unable to replace " + ndjsonFile);
+				}
+				if (!ndjsonTmp.renameTo(ndjsonFile)) {
+					throw new IOException("Unable to rename " + ndjsonTmp +
+														" to " + ndjsonFile);
+				}
+			} else {
+				writeConfigFiles(dir, targets);
+			}
+		}
+		deleteDir(partsDir);
+		if (!failures.isEmpty()) {
+			throw new MojoFailureException("Apigee network call error. " +
+					failures.size() + " KVM(s) could not be exported: " + failures);
+		}
+		logger.info("Exported " + targets.size() + " KVM(s) to " + dir);
+	}
+
+	/**
+	 * Joins the map files of each scope into its kvms.json
+	 */
+	private static void writeConfigFiles(File dir, List<Target> targets)
+			throws IOException {
+		Map<String, List<Target>> byPath = new LinkedHashMap<String, List<Target>>();
+		for (Target target : targets) {
+			if (!byPath.containsKey(target.getPath())) {
+				byPath.put(target.getPath(), new ArrayList<Target>());
+			}
+			byPath.get(target.getPath()).add(target);
+		}
+		byte[] buffer = new byte[8192];
+		for (Map.Entry<String, List<Target>> entry : byPath.entrySet()) {
+			File file = new File(dir, entry.getKey() + File.separator + "kvms.json");
+			file.getParentFile().mkdirs();
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write("[\n".getBytes("UTF-8"));
+				boolean first = true;
+				for (Target target : entry.getValue()) {
+					if (!first) out.write(",\n".getBytes("UTF-8"));
+					first = false;
+					InputStream in = new FileInputStream(target.part);
+					try {
+						int n;
+						while ((n = in.read(buffer)) > 0) {
+							out.write(buffer, 0, n);
+						}
+					} finally {
+						in.close();
+					}
+				}
+				out.write("\n]\n".getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+			logger.info("Wrote " + file);
+		}
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * One NDJSON line per entry, shared by all maps
+	 */
+	static class LineSink implements KvmOperations.EntrySink {
+		private final Target target;
+		private final Writer writer;
+		private boolean encrypted;
+
+		LineSink(Target target, Writer writer) {
+			this.target = target;
+			this.writer = writer;
+		}
+
+		public void begin(String kvmName, boolean encrypted) {
+			this.encrypted = encrypted;
+		}
+
+		public void entry(String name, String value) throws IOException {
+			JSONObject line = new JSONObject();
+			line.put("scope", target.scope);
+			if (target.parent != null) line.put(target.scope, target.parent);
+			line.put("kvm", target.name);
+			line.put("encrypted", encrypted);
+			line.put("name", name);
+			line.put("value", value);
+			String text = line.toJSONString();
+			synchronized (writer) {
+				writer.write(text);
+				writer.write('\n');
+			}
+		}
+
+		public void end() {
+		}
+	}
+
+	/**
+	 * The map as a kvms.json element, written to its own file
+	 */
+	static class ConfigSink implements KvmOperations.EntrySink {
+		private final JsonWriter writer;
+		private boolean closed;
+
+		ConfigSink(File file) throws IOException {
+			this.writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+									new FileOutputStream(file), "UTF-8")));
+			this.writer.setIndent("    ");
+		}
+
+		public synchronized void begin(String kvmName, boolean encrypted)
+				throws IOException {
+			writer.beginObject();
+			writer.name("name").value(kvmName);
+			writer.name("encrypted").value(encrypted);
+			writer.name("entry").beginArray();
+		}
+
+		public synchronized void entry(String name, String value)
+				throws IOException {
+			writer.beginObject();
+			writer.name("name").value(name);
+			writer.name("value").value(value);
+			writer.endObject();
+		}
+
+		public synchronized void end() throws IOException {
+			writer.endArray();
+			writer.endObject();
+			closed = true;
+			writer.close();
+		}
+
+		/**
+		 * Releases the file of a map whose export failed before end
+		 */
+		public synchronized void close() {
+			if (closed) return;
+			closed = true;
+			try {
+				writer.close();
+			} catch (IOException e) {
+				/* incomplete document, the part file is not used */
+			}
+		}
+	}
+
+	/**
+	 * Entry point for the mojo.
+	 */
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (super.isSkip()) {
+			getLog().info("Skipping");
+			return;
+		}
+
+		Logger logger = LoggerFactory.getLogger(ExportKVMMojo.class);
+
+		try {
+
+			init();
+
+			if (exportDir == null || exportDir.length() == 0) {
+				throw new MojoFailureException("Please provide the directory where the KVMs should be exported (-Dapigee.config.exportDir)");
+			}
+
+			List<Target> targets = getTargets();
+			if (targets.size() == 0) {
+				logger.info("No KVMs found.");
+				return;
+			}
+
+			doExport(targets);
+
+		} catch (IOException e) {
+			throw new MojoFailureException("Apigee network call error " +
+														 e.getMessage());
+		} catch (MojoFailureException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		}
+	}
+
+    /***************************************************************************
+     * REST call wrappers
+     **/
+
+    public static List<String> getAPIs(ServerProfile profile)
+            throws IOException {
+
+        return new ArrayList<String>(
+                RestUtil.listOrgConfig(profile, "apis", false).readAll());
+    }
+}
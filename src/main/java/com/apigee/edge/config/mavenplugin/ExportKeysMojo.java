@@ -15,28 +15,51 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.apigee.edge.config.mavenplugin.export.ExportState;
+import com.apigee.edge.config.mavenplugin.reconcile.ContentDigest;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.util.Key;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**                                                                                                                                     ¡¡
  * Goal to export Dev app keys to a file
@@ -57,10 +80,24 @@ public class ExportKeysMojo extends GatewayAbstractMojo
 	
 	private String exportDir;
 
+	enum FORMAT {
+		json, ndjson
+	}
+
+	FORMAT format = FORMAT.json;
+
+	private boolean gzip;
+
+	private boolean incremental;
+
+	private int fullAfter;
+
     public static class App {
         @Key
         public String name;
         @Key
+        public String developerId;
+        @Key
         public List<Credentials> credentials;
     }
 	
@@ -91,10 +128,17 @@ public class ExportKeysMojo extends GatewayAbstractMojo
 
 			serverProfile = super.getProfile();			
 			exportDir = super.getExportDir();
+			if (super.getAppExportFormat() != null) {
+				format = FORMAT.valueOf(super.getAppExportFormat());
+			}
+			gzip = super.isAppExportGzip();
+			incremental = super.isAppExportIncremental();
+			fullAfter = super.getAppExportFullAfter();
 			logger.debug("exportDir " + exportDir);
+			logger.debug("Export format " + format.name() + (gzip ? " gzip" : ""));
 			logger.debug("Base dir " + super.getBaseDirectoryPath());
 		} catch (IllegalArgumentException e) {
-			throw new RuntimeException("Invalid apigee.option provided");
+			throw new RuntimeException("Invalid apigee.app.exportFormat provided");
 		} catch (RuntimeException e) {
 			throw e;
 		}
@@ -112,59 +156,361 @@ public class ExportKeysMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * Fetches the apps of each developer on the worker pool
+	 * (apigee.config.threads), one expanded app listing per developer.
+	 * Apps are written to the export file as they arrive.
+	 */
 	protected void doExport(Map<String, List<String>> apps) 
             throws MojoFailureException {
 		if(exportDir==null || exportDir ==""){
     		throw new MojoFailureException("Please provide the directory where the devAppKeys.json file should be exported (-Dapigee.config.exportDir)");
     	}
+		/* developer emails are case insensitive */
+		Map<String, String> developers = new LinkedHashMap<String, String>();
+		for (String developer : apps.keySet()) {
+			if (!developers.containsKey(developer.toLowerCase())) {
+				developers.put(developer.toLowerCase(), developer);
+			}
+		}
+		final List<String> developerIds = new ArrayList<String>(developers.values());
+		final int total = developerIds.size();
+		final File stateFile = new File(exportDir, "devAppKeys.state.json");
+		final ExportState previous;
+		final Map<String, App> previousApps;
+		final ExportState next = new ExportState();
+		final AtomicInteger reused = new AtomicInteger();
+		final AppKeysWriter writer;
+		try {
+			File exportFile = getExportFile(exportDir, format, gzip);
+			if (incremental) {
+				previous = ExportState.read(stateFile);
+				long now = System.currentTimeMillis();
+				if (previous.size() > 0 && exportFile.exists() &&
+						(fullAfter <= 0 || now - previous.getFullExportAt() <
+											TimeUnit.HOURS.toMillis(fullAfter))) {
+					previousApps = readExport(exportFile, format == FORMAT.ndjson, gzip);
+					next.setFullExportAt(previous.getFullExportAt());
+					logger.info("Incremental export of apps changed since " +
+							previous.getWatermark() + ", " + previousApps.size() +
+							" app(s) in the previous export");
+				} else {
+					/* key status changes do not always change the app's
+					 * lastModifiedAt, a full export picks them up */
+					previousApps = null;
+					next.setFullExportAt(now);
+					logger.info("Full export of apps" + (fullAfter > 0 ?
+							", the next one after " + fullAfter + " hour(s)" : ""));
+				}
+			} else {
+				previous = null;
+				previousApps = null;
+			}
+			writer = new AppKeysWriter(exportFile, format == FORMAT.ndjson, gzip);
+		} catch (IOException e) {
+			throw new MojoFailureException("Unable to write to " + exportDir +
+														" " + e.getMessage());
+		}
+		final AtomicInteger done = new AtomicInteger();
+		final int step = Math.max(1, total / 10);
+		final List<String> failures =
+				Collections.synchronizedList(new ArrayList<String>());
+
+		WorkerPool pool = WorkerPool.forProfile(serverProfile, "app-export");
+		writer.setWindow(2 * pool.getThreads());
 		try {
-			List<String> existingApps = null;
-			List<App> devApps = new ArrayList<App>();
-            for (Map.Entry<String, List<String>> entry : apps.entrySet()) {
-
-                String developerId = URLEncoder.encode(entry.getKey(), "UTF-8");
-                logger.info("Retrieving Apps of " + developerId);
-                existingApps = getApp(serverProfile, developerId);
-                
-                if(existingApps!=null && existingApps.size()>0){
-                	for (String existingApp : existingApps) {
-						logger.info("Fetching App info for: "+existingApp);
-						devApps.add(getAppDetails(serverProfile, developerId, existingApp));
+			for (int i = 0; i < total; i++) {
+				final int index = i;
+				writer.awaitTurn(index);
+				pool.submit(new Callable<Void>() {
+					public Void call() {
+						String developerId = developerIds.get(index);
+						List<App> apps = Collections.emptyList();
+						try {
+							logger.info("Retrieving Apps of " + developerId);
+							apps = incremental ?
+								getChangedApps(serverProfile, developerId, previous,
+											previousApps, next, reused) :
+								getApps(serverProfile, developerId);
+						} catch (Exception e) {
+							logger.error("Apps of " + developerId + " export error " +
+														e.getMessage());
+							failures.add(developerId + ": " + e.getMessage());
+						}
+						try {
+							writer.write(index, apps);
+						} catch (IOException e) {
+							failures.add(developerId + ": " + e.getMessage());
+						}
+						int count = done.incrementAndGet();
+						if (count % step == 0 || count == total) {
+							logger.info("Retrieved apps of " + count + "/" + total +
+															" developer(s)");
+						}
+						return null;
 					}
-                }
-            }
-            exportToFile(serverProfile, devApps, exportDir);
+				});
+			}
+			pool.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writer.abort();
+			throw new MojoFailureException("Interrupted while exporting apps");
+		}
+
+		if (!failures.isEmpty()) {
+			writer.abort();
+			throw new MojoFailureException("Apigee network call error. Apps of " +
+					failures.size() + " developer(s) could not be exported: " + failures);
+		}
+		try {
+			writer.commit();
+			if (incremental) {
+				next.write(stateFile);
+			}
 		} catch (IOException e) {
-			throw new MojoFailureException("Apigee network call error " +
-														 e.getMessage());
-		} catch (RuntimeException e) {
-			throw e;
+			writer.abort();
+			throw new MojoFailureException("Unable to write " + writer.getFile() +
+														" " + e.getMessage());
+		}
+		if (incremental) {
+			logger.info("Apps fetched: " + (writer.getCount() - reused.get()) +
+						", unchanged since the previous export: " + reused.get());
 		}
+		logger.info("Exported " + writer.getCount() + " app(s) to " + writer.getFile());
 	}
 
-	public static void exportToFile(ServerProfile profile, List<App> apps, String exportFilePath)
-            throws IOException, MojoFailureException {
-		BufferedWriter bw = null;
-		FileWriter fw = null;
+	/**
+	 * Apps of a developer listed without their credentials. Apps unchanged
+	 * since the previous export are taken from it, credentials are only read
+	 * for new and changed apps. Without previousApps (full export) the apps
+	 * are listed with their credentials and recorded in next.
+	 *
+	 * An app counts as unchanged when its lastModifiedAt is unchanged; key
+	 * status and key product changes do not always update it, which the
+	 * periodic full export (apigee.app.exportFullAfter) makes up for.
+	 */
+	protected static List<App> getChangedApps(ServerProfile profile,
+			String developerId, ExportState previous, Map<String, App> previousApps,
+			ExportState next, AtomicInteger reused)
+			throws IOException, MojoFailureException {
+		List<App> apps = new ArrayList<App>();
+		Gson gson = new Gson();
+		for (JsonObject listed : getAppObjects(profile, developerId,
+												previousApps == null)) {
+			String name = listed.get("name").getAsString();
+			String key = (listed.has("developerId") ?
+					listed.get("developerId").getAsString() : developerId) + "/" + name;
+			long lastModifiedAt = listed.has("lastModifiedAt") ?
+					listed.get("lastModifiedAt").getAsLong() : 0;
+			App app = (previousApps != null) ? previousApps.get(key) : null;
+			if (app != null && previous.isUnchanged(key, lastModifiedAt, digest(app))) {
+				reused.incrementAndGet();
+			} else if (listed.has("credentials")) {
+				app = gson.fromJson(listed, App.class);
+			} else {
+				logger.info("Fetching App info for: " + name);
+				app = getAppDetails(profile,
+						URLEncoder.encode(developerId, "UTF-8"), name);
+			}
+			next.put(key, lastModifiedAt, digest(app));
+			apps.add(app);
+		}
+		return apps;
+	}
+
+	private static String digest(App app) {
+		return ContentDigest.sha256(new Gson().toJson(app, App.class));
+	}
 
+	/**
+	 * Apps of a previous export by developerId/name, records without a
+	 * developerId (older exports) are left out
+	 */
+	static Map<String, App> readExport(File file, boolean ndjson, boolean gzip)
+			throws IOException {
+		Map<String, App> apps = new HashMap<String, App>();
+		InputStream stream = new FileInputStream(file);
+		if (gzip) {
+			stream = new GZIPInputStream(stream);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+		Gson gson = new Gson();
 		try {
-			Gson gson = new GsonBuilder().setPrettyPrinting().create();
-			String payload = gson.toJson(apps);
-			logger.debug("export payload: "+payload);
-			fw = new FileWriter(exportFilePath+ File.separator+"devAppKeys.json");
-			bw = new BufferedWriter(fw);
-			bw.write(payload);
-		} catch (IOException e) {
-			e.printStackTrace();
+			if (ndjson) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().length() > 0) {
+						add(apps, (App) gson.fromJson(line, App.class));
+					}
+				}
+			} else {
+				JsonReader json = new JsonReader(reader);
+				json.beginArray();
+				while (json.hasNext()) {
+					add(apps, (App) gson.fromJson(json, App.class));
+				}
+				json.endArray();
+			}
+		} catch (JsonParseException e) {
+			throw new IOException("Invalid export " + file + " " + e.getMessage());
+		} catch (IllegalStateException e) {
+			throw new IOException("Invalid export " + file + " " + e.getMessage());
 		} finally {
+			reader.close();
+		}
+		return apps;
+	}
+
+	private static void add(Map<String, App> apps, App app) {
+		if (app != null && app.developerId != null && app.name != null) {
+			apps.put(app.developerId + "/" + app.name, app);
+		}
+	}
+
+	static File getExportFile(String exportDir, FORMAT format, boolean gzip) {
+		return new File(exportDir, "devAppKeys." + format.name() +
+											(gzip ? ".gz" : ""));
+	}
+
+	/**
+	 * Writes the exported apps one at a time to a temporary file that
+	 * replaces the export file on commit. Apps of developers finishing out
+	 * of order wait in a reorder window of setWindow developers, see
+	 * awaitTurn.
+	 *
+	 * json   - a pretty printed array of apps (devAppKeys.json)
+	 * ndjson - one app per line (devAppKeys.ndjson)
+	 */
+	public static class AppKeysWriter {
+		private final File file;
+		private final File tmp;
+		private final Writer out;
+		private final JsonWriter json;
+		private final Gson gson;
+		private final Map<Integer, List<App>> pending = new HashMap<Integer, List<App>>();
+		private int next;
+		private int count;
+		private int window; // 0 does not limit the reorder window
+		private boolean failed;
+
+		public AppKeysWriter(File file, boolean ndjson, boolean gzip)
+				throws IOException {
+			this.file = file;
+			File dir = file.getAbsoluteFile().getParentFile();
+			if (dir != null) {
+				dir.mkdirs();
+			}
+			this.tmp = new File(file.getPath() + ".tmp");
+			OutputStream stream = new FileOutputStream(tmp);
+			if (gzip) {
+				stream = new GZIPOutputStream(stream);
+			}
+			this.out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+			if (ndjson) {
+				this.gson = new Gson();
+				this.json = null;
+			} else {
+				this.gson = new GsonBuilder().setPrettyPrinting().create();
+				this.json = new JsonWriter(out);
+				this.json.setIndent("  ");
+				this.json.beginArray();
+			}
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public synchronized int getCount() {
+			return count;
+		}
+
+		public synchronized void setWindow(int window) {
+			this.window = window;
+		}
+
+		/**
+		 * Blocks until the index-th developer is within the reorder window,
+		 * so at most window developers' apps are buffered
+		 */
+		public synchronized void awaitTurn(int index) throws InterruptedException {
+			while (window > 0 && !failed && index >= next + window) {
+				wait();
+			}
+		}
+
+		public synchronized void write(App app) throws IOException {
+			if (json != null) {
+				gson.toJson(app, App.class, json);
+			} else {
+				out.write(gson.toJson(app, App.class));
+				out.write('\n');
+			}
+			count++;
+		}
+
+		/**
+		 * Apps of the index-th developer, written in developer order
+		 */
+		public synchronized void write(int index, List<App> apps)
+				throws IOException {
+			if (failed) {
+				return; // the export is aborted, do not buffer any more
+			}
+			pending.put(index, apps);
+			try {
+				while (pending.containsKey(next)) {
+					for (App app : pending.remove(next)) {
+						write(app);
+					}
+					next++;
+				}
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			} finally {
+				notifyAll();
+			}
+		}
+
+		public synchronized void commit() throws IOException {
+			if (json != null) {
+				json.endArray();
+				json.close();
+			} else {
+				out.close();
+			}
+			if (file.exists() && !file.delete()) {
+				throw new IOException("Unable to replace " + file);
+			}
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Unable to rename " + tmp + " to " + file);
+			}
+		}
+
+		public synchronized void abort() {
 			try {
-				if (bw != null)
-					bw.close();
-				if (fw != null)
-					fw.close();
-			} catch (IOException ex) {
-				ex.printStackTrace();
+				out.close();
+			} catch (IOException e) {
+				logger.debug("Close " + tmp + " failed " + e.getMessage());
+			}
+			tmp.delete();
+		}
+	}
+
+	public static void exportToFile(ServerProfile profile, List<App> apps, String exportFilePath)
+            throws IOException, MojoFailureException {
+		AppKeysWriter writer = new AppKeysWriter(
+				getExportFile(exportFilePath, FORMAT.json, false), false, false);
+		try {
+			for (App app : apps) {
+				writer.write(app);
 			}
+			writer.commit();
+		} catch (IOException e) {
+			writer.abort();
+			throw e;
 		}
 	}
 	
@@ -234,6 +580,77 @@ public class ExportKeysMojo extends GatewayAbstractMojo
         return appsList;
     }	
     
+    public static List<App> getApps(ServerProfile profile, String developerId)
+            throws IOException, MojoFailureException {
+
+        List<App> apps = new ArrayList<App>();
+        Gson gson = new Gson();
+        for (JsonObject app : getAppObjects(profile, developerId)) {
+            apps.add(gson.fromJson(app, App.class));
+        }
+        return apps;
+    }
+
+    /**
+     * Apps of a developer with their credentials in one call
+     * (apps?expand=true). When the listing only returns app names the
+     * details are read per app.
+     */
+    public static List<JsonObject> getAppObjects(ServerProfile profile,
+                                                 String developerId)
+            throws IOException, MojoFailureException {
+        return getAppObjects(profile, developerId, true);
+    }
+
+    /**
+     * Without credentials the listing asks for the apps only
+     * (includeCred=false, shallowExpand=true); servers that ignore this
+     * still return the credentials.
+     */
+    public static List<JsonObject> getAppObjects(ServerProfile profile,
+                                                 String developerId,
+                                                 boolean credentials)
+            throws IOException, MojoFailureException {
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("expand", "true");
+        if (!credentials) {
+            params.put("includeCred", "false");
+            params.put("shallowExpand", "true");
+        }
+        HttpResponse response = RestUtil.getOrgConfig(profile, "developers",
+                                                developerId, "apps", params);
+        List<JsonObject> apps = new ArrayList<JsonObject>();
+        if (response == null) return apps;
+        try {
+            logger.debug("output " + response.getContentType());
+            JsonParser parser = new JsonParser();
+            JsonElement payload = parser.parse(response.parseAsString());
+            if (payload.isJsonObject()) {
+                JsonElement expanded = payload.getAsJsonObject().get("app");
+                if (expanded != null && expanded.isJsonArray()) {
+                    for (JsonElement app : expanded.getAsJsonArray()) {
+                        apps.add(app.getAsJsonObject());
+                    }
+                }
+            } else if (payload.isJsonArray()) {
+                String encodedId = URLEncoder.encode(developerId, "UTF-8");
+                for (JsonElement name : payload.getAsJsonArray()) {
+                    logger.info("Fetching App info for: " + name.getAsString());
+                    HttpResponse app = RestUtil.getOrgConfig(profile,
+                            "developers/" + encodedId + "/apps/" + name.getAsString());
+                    apps.add(parser.parse(app.parseAsString()).getAsJsonObject());
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new MojoFailureException(e.getMessage());
+        } catch (HttpResponseException e) {
+            logger.error("Get Apps error " + e.getMessage());
+            throw new IOException(e.getMessage());
+        }
+        return apps;
+    }
+
     public static App getAppDetails(ServerProfile profile, String developerId, String app)
             throws IOException, MojoFailureException {
 
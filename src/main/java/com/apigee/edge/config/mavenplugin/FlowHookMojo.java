@@ -18,16 +18,19 @@ package com.apigee.edge.config.mavenplugin;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileEngine;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 import com.google.api.client.http.HttpResponse;
@@ -102,6 +105,35 @@ public class FlowHookMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * true when the flow hook point already has the shared flow and
+	 * continueOnError of the local config
+	 */
+	protected static boolean isAttached(String flowhook, String remote) {
+		String sharedFlow = getAttachment(flowhook, "sharedFlow");
+		if (sharedFlow == null ||
+				!sharedFlow.equals(getAttachment(remote, "sharedFlow"))) {
+			return false;
+		}
+		String continueOnError = getAttachment(flowhook, "continueOnError");
+		return String.valueOf(Boolean.parseBoolean(continueOnError)).equals(
+				String.valueOf(Boolean.parseBoolean(
+						getAttachment(remote, "continueOnError"))));
+	}
+
+	protected static String getAttachment(String flowhook, String field) {
+		try {
+			JSONObject obj = (JSONObject) new JSONParser().parse(flowhook);
+			Object value = obj.get(field);
+			return (value == null || value.toString().length() == 0) ?
+								null : value.toString();
+		} catch (ParseException e) {
+			return null;
+		} catch (ClassCastException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * FlowHooks
 	 */
@@ -115,37 +147,49 @@ public class FlowHookMojo extends GatewayAbstractMojo
 				return;
 			}
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
 	        for (String flowhook : flowhooks) {
 	        	String flowhookName = getFlowhookName(flowhook);
 	        	if (flowhookName == null) {
 	        		throw new IllegalArgumentException(
 	        			"Flowhook does not have a name.\n" + flowhook + "\n");
 	        	}
-                switch (buildOption) {
-                    case update:
-                        logger.info("Updating Flowhook " + flowhookName);
-                        createUpdateFlowhook(serverProfile, flowhookName, flowhook, "Update");
-                        break;
-                    case create:
-                        logger.info("Attaching Flowhook " + flowhookName);
-                        createUpdateFlowhook(serverProfile, flowhookName, flowhook, "Create");
-                        break;
-                    case delete:
-                        logger.info("Detaching Flowhook " + flowhookName );
-                        deleteFlowhook(serverProfile, flowhookName, flowhook);
-                        break;
-                    case sync:
-                    	logger.info("Detaching Flowhook " + flowhookName );
-                        deleteFlowhook(serverProfile, flowhookName, flowhook);
-                        logger.info("Attaching Flowhook " + flowhookName );
-                        createUpdateFlowhook(serverProfile, flowhookName, flowhook, "Create");
-                        break;
-                }
+                items.add(new ReconcileItem(flowhookName, flowhook));
 			}
+
+            /* flow hook points always exist, attach or detach unconditionally */
+            ReconcileEngine engine = getReconcileEngine(serverProfile);
+            engine.run(ReconcileEngine.planUnconditional(buildOption.name(), items),
+                                                    new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Flowhook";
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createUpdateFlowhook(serverProfile, item.getName(),
+                                                item.getPayload(), "Create");
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    createUpdateFlowhook(serverProfile, item.getName(),
+                                                item.getPayload(), "Update");
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteFlowhook(serverProfile, item.getName(),
+                                                item.getPayload());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(RestUtil.getEnvConfig(
+                                serverProfile, "flowhooks", item.getName()));
+                }
+                public boolean isUnchanged(ReconcileItem item, String remote) {
+                    return isAttached(item.getPayload(), remote);
+                }
+                public boolean isDeleted(ReconcileItem item) throws IOException {
+                    String remote = getRemote(item);
+                    return remote != null &&
+                            getAttachment(remote, "sharedFlow") == null;
+                }
+            });
 		
-		} catch (IOException e) {
-			throw new MojoFailureException("Apigee network call error " +
-														 e.getMessage());
 		} catch (RuntimeException e) {
 			throw e;
 		}
@@ -236,36 +280,11 @@ public class FlowHookMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getFlowhook(ServerProfile profile)
+    public static Set<String> getFlowhook(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getEnvConfig(profile, "flowhooks");
-        if(response == null) return new ArrayList();
-        JSONArray flowhooks = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"flowhooks\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            flowhooks    = (JSONArray)obj1.get("flowhooks");
-
-        } catch (ParseException pe){
-            logger.error("Get flowhook parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get flowhook error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return flowhooks;
-    }	
+        return RestUtil.listEnvConfig(profile, "flowhooks").readAll();
+    }
 }
 
 
@@ -18,10 +18,14 @@ package com.apigee.edge.config.mavenplugin;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileEngine;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcilePlan;
 import com.apigee.edge.config.utils.ServerProfile;
 import com.apigee.edge.config.utils.ConfigReader;
 import com.apigee.edge.config.utils.ConsolidatedConfigReader;
@@ -195,9 +199,272 @@ public abstract class GatewayAbstractMojo extends AbstractMojo {
 	 * @parameter expression="${apigee.clientsecret}"
 	 */
 	private String clientsecret;
+
+	/**
+	 * Encrypted OAuth token cache file shared across builds, true for ~/.apigee/token-cache
+	 * 
+	 * @parameter property="apigee.tokenCache"
+	 */
+	private String tokenCache;
+
+	/**
+	 * Token cache passphrase, defaults to the password
+	 * 
+	 * @parameter property="apigee.tokenCache.passphrase"
+	 */
+	private String tokenCachePassphrase;
+
+	/**
+	 * HTTP transport for management API calls: default|pooled
+	 * 
+	 * @parameter property="apigee.http.transport" default-value="default"
+	 */
+	private String httpTransport;
+
+	/**
+	 * Pooled transport - max connections in total
+	 * 
+	 * @parameter property="apigee.http.maxConnections" default-value="20"
+	 */
+	private int httpMaxConnections;
+
+	/**
+	 * Pooled transport - max connections per route (host)
+	 * 
+	 * @parameter property="apigee.http.maxConnectionsPerRoute" default-value="10"
+	 */
+	private int httpMaxConnectionsPerRoute;
+
+	/**
+	 * Pooled transport - idle connections are evicted after this many seconds
+	 * 
+	 * @parameter property="apigee.http.idleTimeout" default-value="30"
+	 */
+	private int httpIdleTimeout;
+
+	/**
+	 * Connect timeout in milliseconds
+	 * 
+	 * @parameter property="apigee.http.connectTimeout" default-value="20000"
+	 */
+	private int httpConnectTimeout;
+
+	/**
+	 * Read timeout in milliseconds, 0 waits forever
+	 * 
+	 * @parameter property="apigee.http.readTimeout" default-value="20000"
+	 */
+	private int httpReadTimeout;
+
+	/**
+	 * Read timeout in milliseconds for file uploads, 0 waits forever
+	 * 
+	 * @parameter property="apigee.http.uploadReadTimeout" default-value="0"
+	 */
+	private int httpUploadReadTimeout;
+
+	/**
+	 * Adapt the number of concurrent management API calls to 429/503 responses
+	 * 
+	 * @parameter property="apigee.http.adaptiveConcurrency" default-value="true"
+	 */
+	private boolean httpAdaptiveConcurrency;
+
+	/**
+	 * Upper limit of concurrent management API calls, 0 uses apigee.config.threads
+	 * 
+	 * @parameter property="apigee.http.maxConcurrency" default-value="0"
+	 */
+	private int httpMaxConcurrency;
+
+	/**
+	 * Attempts for idempotent management API calls (GET/PUT/DELETE), 1 disables retries
+	 * 
+	 * @parameter property="apigee.http.retryMaxAttempts" default-value="3"
+	 */
+	private int httpRetryMaxAttempts;
+
+	/**
+	 * Retry backoff base delay in milliseconds
+	 * 
+	 * @parameter property="apigee.http.retryBaseDelay" default-value="500"
+	 */
+	private long httpRetryBaseDelay;
+
+	/**
+	 * Retry backoff cap in milliseconds
+	 * 
+	 * @parameter property="apigee.http.retryMaxDelay" default-value="10000"
+	 */
+	private long httpRetryMaxDelay;
+
+	/**
+	 * Number of config entities processed concurrently
+	 * 
+	 * @parameter property="apigee.config.threads" default-value="1"
+	 */
+	private int configThreads;
+
+	/**
+	 * Worker thread type: platform|virtual (Java 21+)
+	 * 
+	 * @parameter property="apigee.config.threadType" default-value="platform"
+	 */
+	private String configThreadType;
+
+	/**
+	 * Number of config types applied concurrently by deployAll, 0 for all
+	 * types whose dependencies are done
+	 * 
+	 * @parameter property="apigee.config.goalThreads" default-value="0"
+	 */
+	private int configGoalThreads;
+
+	/**
+	 * exportKvms output: ndjson|config
+	 * 
+	 * @parameter property="apigee.kvm.exportFormat" default-value="ndjson"
+	 */
+	private String kvmExportFormat;
+
+	/**
+	 * exportKvms scopes, comma separated: org,env,api
+	 * 
+	 * @parameter property="apigee.kvm.exportScope" default-value="org,env,api"
+	 */
+	private String kvmExportScope;
+
+	/**
+	 * exportAppKeys output: json|ndjson
+	 * 
+	 * @parameter property="apigee.app.exportFormat" default-value="json"
+	 */
+	private String appExportFormat;
+
+	/**
+	 * gzip the exportAppKeys file
+	 * 
+	 * @parameter property="apigee.app.exportGzip" default-value="false"
+	 */
+	private boolean appExportGzip;
+
+	/**
+	 * exportAppKeys fetches only apps changed since the previous export
+	 * 
+	 * @parameter property="apigee.app.exportIncremental" default-value="false"
+	 */
+	private boolean appExportIncremental;
+
+	/**
+	 * Hours after which an incremental exportAppKeys fetches all apps
+	 * again, 0 never forces a full export
+	 * 
+	 * @parameter property="apigee.app.exportFullAfter" default-value="24"
+	 */
+	private int appExportFullAfter;
+
+	/**
+	 * Number of KVM entries written concurrently (CPS orgs)
+	 * 
+	 * @parameter property="apigee.kvm.entryThreads" default-value="1"
+	 */
+	private int kvmEntryThreads;
+
+	/**
+	 * Concurrent entry writes for org KVMs, 0 uses apigee.kvm.entryThreads
+	 * 
+	 * @parameter property="apigee.kvm.org.entryThreads" default-value="0"
+	 */
+	private int kvmOrgEntryThreads;
+
+	/**
+	 * Concurrent entry writes for env KVMs, 0 uses apigee.kvm.entryThreads
+	 * 
+	 * @parameter property="apigee.kvm.env.entryThreads" default-value="0"
+	 */
+	private int kvmEnvEntryThreads;
+
+	/**
+	 * Concurrent entry writes for API KVMs, 0 uses apigee.kvm.entryThreads
+	 * 
+	 * @parameter property="apigee.kvm.api.entryThreads" default-value="0"
+	 */
+	private int kvmApiEntryThreads;
+
+	/**
+	 * Read every remote entry value before a KVM sync on CPS orgs, so only
+	 * changed entries are written
+	 * 
+	 * @parameter property="apigee.kvm.syncReadValues" default-value="false"
+	 */
+	private boolean kvmSyncReadValues;
+
+	/**
+	 * File with the digests of uploaded resource files, lets unchanged files
+	 * be skipped without downloading them
+	 * 
+	 * @parameter property="apigee.resourcefile.ledger"
+	 */
+	private String resourceFileLedger;
+
+	/**
+	 * With sync, delete entities that exist in Apigee but not in the config
+	 * 
+	 * @parameter property="apigee.config.prune" default-value="false"
+	 */
+	private boolean configPrune;
+
+	/**
+	 * Read existing entities before updating and skip those that are unchanged
+	 * 
+	 * @parameter property="apigee.config.skipUnchanged" default-value="true"
+	 */
+	private boolean configSkipUnchanged;
+
+	/**
+	 * Log the create/update/delete plan without changing Apigee
+	 * 
+	 * @parameter property="apigee.config.plan" default-value="false"
+	 */
+	private boolean configPlan;
+
+	/**
+	 * Plan file, written with apigee.config.plan=true and applied otherwise
+	 * 
+	 * @parameter property="apigee.config.planFile"
+	 */
+	private String configPlanFile;
 	
 	// TODO set resources/edge as default value
 
+	public int getConfigGoalThreads() {
+		return configGoalThreads;
+	}
+
+	public String getKvmExportFormat() {
+		return kvmExportFormat;
+	}
+
+	public String getKvmExportScope() {
+		return kvmExportScope;
+	}
+
+	public String getAppExportFormat() {
+		return appExportFormat;
+	}
+
+	public boolean isAppExportGzip() {
+		return appExportGzip;
+	}
+
+	public boolean isAppExportIncremental() {
+		return appExportIncremental;
+	}
+
+	public int getAppExportFullAfter() {
+		return appExportFullAfter;
+	}
+
 	public String getExportDir() {
 		return exportDir;
 	}
@@ -216,12 +483,21 @@ public abstract class GatewayAbstractMojo extends AbstractMojo {
 
 	public ServerProfile buildProfile;
 
+	/**
+	 * Profile of the goal that runs several config types, see shareProfile
+	 */
+	private ServerProfile sharedProfile;
+
 	public GatewayAbstractMojo(){
 		super();
 		
 	}
 
 	public ServerProfile getProfile() {
+		if (sharedProfile != null) {
+			this.buildProfile = sharedProfile;
+			return buildProfile;
+		}
 		this.buildProfile = new ServerProfile();
 		this.buildProfile.setOrg(this.orgName);
 		this.buildProfile.setApplication(this.projectName);
@@ -239,9 +515,86 @@ public abstract class GatewayAbstractMojo extends AbstractMojo {
 		this.buildProfile.setRefreshToken(this.refresh);
 		this.buildProfile.setClientId(this.clientid);
 		this.buildProfile.setClientSecret(this.clientsecret);
+		this.buildProfile.setTokenCache(this.tokenCache);
+		this.buildProfile.setTokenCachePassphrase(this.tokenCachePassphrase);
+		this.buildProfile.setHttpTransport(this.httpTransport);
+		this.buildProfile.setHttpMaxConnections(this.httpMaxConnections);
+		this.buildProfile.setHttpMaxConnectionsPerRoute(this.httpMaxConnectionsPerRoute);
+		this.buildProfile.setHttpIdleTimeout(this.httpIdleTimeout);
+		this.buildProfile.setHttpConnectTimeout(this.httpConnectTimeout);
+		this.buildProfile.setHttpReadTimeout(this.httpReadTimeout);
+		this.buildProfile.setHttpUploadReadTimeout(this.httpUploadReadTimeout);
+		this.buildProfile.setHttpAdaptiveConcurrency(this.httpAdaptiveConcurrency);
+		this.buildProfile.setHttpMaxConcurrency(this.httpMaxConcurrency);
+		this.buildProfile.setHttpRetryMaxAttempts(this.httpRetryMaxAttempts);
+		this.buildProfile.setHttpRetryBaseDelay(this.httpRetryBaseDelay);
+		this.buildProfile.setHttpRetryMaxDelay(this.httpRetryMaxDelay);
+		this.buildProfile.setConfigThreads(this.configThreads);
+		this.buildProfile.setConfigThreadType(this.configThreadType);
+		this.buildProfile.setKvmEntryThreads(this.kvmEntryThreads);
+		this.buildProfile.setKvmOrgEntryThreads(this.kvmOrgEntryThreads);
+		this.buildProfile.setKvmEnvEntryThreads(this.kvmEnvEntryThreads);
+		this.buildProfile.setKvmApiEntryThreads(this.kvmApiEntryThreads);
+		this.buildProfile.setKvmSyncReadValues(this.kvmSyncReadValues);
+		this.buildProfile.setConfigPrune(this.configPrune);
+		this.buildProfile.setResourceFileLedger(this.resourceFileLedger);
+		this.buildProfile.setConfigSkipUnchanged(this.configSkipUnchanged);
+		this.buildProfile.setConfigPlan(this.configPlan);
+		this.buildProfile.setConfigPlanFile(this.configPlanFile);
 		return buildProfile;
 	}
 
+	public boolean isConfigPlan() {
+		return configPlan;
+	}
+
+	public void setConfigPlan(boolean configPlan) {
+		this.configPlan = configPlan;
+	}
+
+	/**
+	 * Copies the parameters of this goal to another goal, used by goals that
+	 * run several config types in one execution.
+	 */
+	protected void configure(GatewayAbstractMojo goal) throws MojoExecutionException {
+		try {
+			for (Field field : GatewayAbstractMojo.class.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) continue;
+				field.setAccessible(true);
+				field.set(goal, field.get(this));
+			}
+		} catch (IllegalAccessException e) {
+			throw new MojoExecutionException("Unable to configure goal " +
+								goal.getClass().getSimpleName(), e);
+		}
+		goal.setLog(getLog());
+		goal.setPluginContext(getPluginContext());
+	}
+
+	/**
+	 * Builds the profile once; goals configured afterwards use the same
+	 * profile instead of building their own.
+	 */
+	protected ServerProfile shareProfile() {
+		sharedProfile = getProfile();
+		return sharedProfile;
+	}
+
+	/**
+	 * Plan of this build, shared by the config goals through the plugin
+	 * context
+	 */
+	protected ReconcilePlan getPlan() {
+		return ReconcilePlan.forContext(getPluginContext());
+	}
+
+	/**
+	 * Reconcile engine recording planned operations in the plan of this build
+	 */
+	protected ReconcileEngine getReconcileEngine(ServerProfile profile) {
+		return new ReconcileEngine(profile, getPlan());
+	}
+
 	public void setProfile(ServerProfile profile) {
 		this.buildProfile = profile;
 	}
@@ -299,6 +652,22 @@ public abstract class GatewayAbstractMojo extends AbstractMojo {
 		this.skip = skip;
 	}
 
+	/**
+	 * File referenced from the config (e.g. a KVM entryFile). Relative paths
+	 * are resolved against apigee.config.dir, or the project base dir when
+	 * the config comes from edge.json.
+	 */
+	protected File getConfigRelativeFile(String path) {
+		File file = new File(path);
+		if (file.isAbsolute()) {
+			return file;
+		}
+		if (configDir != null && configDir.length() > 0) {
+			return new File(configDir, path);
+		}
+		return new File(getBaseDirectoryPath(), path);
+	}
+
 	private File findConsolidatedConfigFile()
 			throws MojoExecutionException {
 		File configFile = new File(getBaseDirectoryPath() + File.separator +
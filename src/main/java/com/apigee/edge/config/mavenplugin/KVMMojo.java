@@ -16,6 +16,8 @@
 package com.apigee.edge.config.mavenplugin;
 
 import com.apigee.edge.config.mavenplugin.kvm.*;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -29,13 +31,13 @@ import com.google.api.client.util.Key;
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 
 import com.google.api.client.http.*;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -69,6 +71,8 @@ public class KVMMojo extends GatewayAbstractMojo
     public static class KVM {
         @Key
         public String name;
+        @Key
+        public String entryFile;
     }
 	
 	public KVMMojo() {
@@ -113,10 +117,71 @@ public class KVMMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * Entries read from an NDJSON/CSV file instead of the "entry" list
+	 */
+	protected File getEntryFile(String payload) throws MojoFailureException {
+		Gson gson = new Gson();
+		try {
+			KVM kvm = gson.fromJson(payload, KVM.class);
+			if (kvm.entryFile == null) {
+				return null;
+			}
+			File entryFile = getConfigRelativeFile(kvm.entryFile);
+			if (!entryFile.exists()) {
+				throw new MojoFailureException("KVM " + kvm.name +
+						" entryFile " + entryFile + " not found");
+			}
+			return entryFile;
+		} catch (JsonParseException e) {
+		  throw new MojoFailureException(e.getMessage());
+		}
+	}
+
+	/**
+	 * A KVM with an entryFile is never compared with Apigee: its payload
+	 * holds no entries and reading the map would load all of them
+	 */
+	protected boolean hasEntryFile(ReconcileItem item) throws MojoFailureException {
+		Gson gson = new Gson();
+		try {
+			KVM kvm = gson.fromJson(item.getPayload(), KVM.class);
+			return kvm != null && kvm.entryFile != null;
+		} catch (JsonParseException e) {
+		  throw new MojoFailureException(e.getMessage());
+		}
+	}
+
+	protected KvmValueObject getValueObject(String api, ReconcileItem item)
+			throws MojoFailureException {
+		KvmValueObject kvm = new KvmValueObject(serverProfile, api,
+									item.getName(), item.getPayload());
+		kvm.setEntryFile(getEntryFile(item.getPayload()));
+		return kvm;
+	}
+
+	/**
+	 * Create payload of a KVM with an entryFile: the map without entries,
+	 * which are imported after the create
+	 */
+	protected static String getCreatePayload(String payload)
+			throws MojoFailureException {
+		try {
+			JSONObject kvm = (JSONObject) new JSONParser().parse(payload);
+			if (kvm.remove("entryFile") == null) {
+				return payload;
+			}
+			kvm.remove("entry");
+			return kvm.toJSONString();
+		} catch (ParseException e) {
+			throw new MojoFailureException(e.getMessage());
+		}
+	}
+
     protected void doOrgUpdate(List<String> kvms, String scope)
                                                  throws MojoFailureException {
         try {
-            List existingKVM = getOrgKVM(serverProfile);
+            Set<String> existingKVM = getOrgKVM(serverProfile);
             if (buildOption != OPTIONS.update && 
                 buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -124,52 +189,52 @@ public class KVMMojo extends GatewayAbstractMojo
                 return;
             }
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
             for (String kvm : kvms) {
                 String kvmName = getKVMName(kvm);
                 if (kvmName == null) {
                     throw new IllegalArgumentException(
                        "KVM does not have a name.\n" + kvm + "\n");
                 }
+                items.add(new ReconcileItem(kvmName, kvm));
+            }
 
-                if (existingKVM.contains(kvmName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Org KVM \"" + kvmName + 
-                                                    "\" exists. Updating.");
-                            kvmOrg.update(new KvmValueObject(serverProfile, kvmName, kvm));
-                            break;
-                        case create:
-                            logger.info("Org KVM \"" + kvmName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Org KVM \"" + kvmName + 
-                                "\" already exists. Deleting.");
-                            deleteOrgKVM(serverProfile, kvmName);
-                            break;
-                        case sync:
-                            logger.info("Org KVM \"" + kvmName + 
-                                "\" already exists. Deleting and recreating.");
-                            deleteOrgKVM(serverProfile, kvmName);
-                            logger.info("Creating Org KVM - " + kvmName);
-                            createOrgKVM(serverProfile, kvm);
-                            break;
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingKVM, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Org KVM";
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    createOrgKVM(serverProfile, getCreatePayload(item.getPayload()));
+                    KvmValueObject kvm = getValueObject(null, item);
+                    if (kvm.getEntryFile() != null) {
+                        kvmOrg.update(kvm);
                     }
-                } else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Org KVM - " + kvmName);
-                            createOrgKVM(serverProfile, kvm);
-                            break;
-                        case delete:
-                            logger.info("Org KVM \"" + kvmName + 
-                                        "\" does not exist. Skipping.");
-                            break;
+                }
+                public void update(ReconcileItem item) throws IOException, MojoFailureException {
+                    KvmValueObject kvm = getValueObject(null, item);
+                    if (buildOption == OPTIONS.sync) {
+                        kvmOrg.sync(kvm);
+                    } else {
+                        kvmOrg.update(kvm);
                     }
                 }
-            }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteOrgKVM(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getOrgKVM(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    if (hasEntryFile(item)) {
+                        return null;
+                    }
+                    return RestUtil.getPayload(
+                            RestUtil.getOrgConfig(serverProfile, "keyvaluemaps", item.getName()));
+                }
+            });
         
         } catch (IOException e) {
             throw new MojoFailureException("Apigee network call error " +
@@ -182,7 +247,7 @@ public class KVMMojo extends GatewayAbstractMojo
     protected void doEnvUpdate(List<String> kvms, String scope)
                                                  throws MojoFailureException {
         try {
-            List existingKVM = getEnvKVM(serverProfile);
+            Set<String> existingKVM = getEnvKVM(serverProfile);
             if (buildOption != OPTIONS.update && 
                 buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -190,53 +255,53 @@ public class KVMMojo extends GatewayAbstractMojo
                 return;
             }
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
             for (String kvm : kvms) {
                 String kvmName = getKVMName(kvm);
                 if (kvmName == null) {
                     throw new IllegalArgumentException(
                        "KVM does not have a name.\n" + kvm + "\n");
                 }
+                items.add(new ReconcileItem(kvmName, kvm));
+            }
 
-                if (existingKVM.contains(kvmName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Env KVM \"" + kvmName + 
-                                                    "\" exists. Updating.");
-                            kvmEnv.update(new KvmValueObject(serverProfile, kvmName, kvm));
-                            break;
-                        case create:
-                            logger.info("Env KVM \"" + kvmName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Env KVM \"" + kvmName + 
-                                "\" already exists. Deleting.");
-                            deleteEnvKVM(serverProfile, kvmName);
-                            break;
-                        case sync:
-                            logger.info("Env KVM \"" + kvmName + 
-                                "\" already exists. Deleting and recreating.");
-                            deleteEnvKVM(serverProfile, kvmName);
-                            logger.info("Creating Env KVM - " + kvmName);
-                            createEnvKVM(serverProfile, kvm);
-                            break;
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingKVM, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Env KVM";
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    createEnvKVM(serverProfile, getCreatePayload(item.getPayload()));
+                    KvmValueObject kvm = getValueObject(null, item);
+                    if (kvm.getEntryFile() != null) {
+                        kvmEnv.update(kvm);
                     }
-                } else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Env KVM - " + kvmName);
-                            createEnvKVM(serverProfile, kvm);
-                            break;
-                        case delete:
-                            logger.info("Env KVM \"" + kvmName + 
-                                        "\" does not exist. Skipping.");
-                            break;
+                }
+                public void update(ReconcileItem item) throws IOException, MojoFailureException {
+                    KvmValueObject kvm = getValueObject(null, item);
+                    if (buildOption == OPTIONS.sync) {
+                        kvmEnv.sync(kvm);
+                    } else {
+                        kvmEnv.update(kvm);
                     }
                 }
-            }
-
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteEnvKVM(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getEnvKVM(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    if (hasEntryFile(item)) {
+                        return null;
+                    }
+                    return RestUtil.getPayload(
+                            RestUtil.getEnvConfig(serverProfile, "keyvaluemaps", item.getName()));
+                }
+            });
+        
         } catch (IOException e) {
             throw new MojoFailureException("Apigee network call error " +
                                                          e.getMessage());
@@ -245,10 +310,10 @@ public class KVMMojo extends GatewayAbstractMojo
         }
     }
 
-	protected void doAPIUpdate(String api, List<String> kvms)
+	protected void doAPIUpdate(final String api, List<String> kvms)
                                                  throws MojoFailureException {
 		try {
-			List existingKVM = getAPIKVM(serverProfile, api);
+			Set<String> existingKVM = getAPIKVM(serverProfile, api);
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -256,53 +321,56 @@ public class KVMMojo extends GatewayAbstractMojo
 				return;
 			}
 
-	        for (String kvm : kvms) {
-	        	String kvmName = getKVMName(kvm);
-	        	if (kvmName == null) {
-	        		throw new IllegalArgumentException(
-	        		   "KVM does not have a name.\n" + kvm + "\n");
-	        	}
-
-        		if (existingKVM.contains(kvmName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("API KVM \"" + kvmName + 
-                                                    "\" exists. Updating.");
-                            kvmApi.update(new KvmValueObject(serverProfile, api, kvmName, kvm));
-                            break;
-                        case create:
-                            logger.info("API KVM \"" + kvmName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("API KVM \"" + kvmName + 
-                                            "\" already exists. Deleting.");
-                            deleteAPIKVM(serverProfile, api, kvmName);
-                            break;
-                        case sync:
-                            logger.info("API KVM \"" + kvmName + 
-                                            "\" already exists. Deleting and recreating.");
-                            deleteAPIKVM(serverProfile, api, kvmName);
-                            logger.info("Creating API KVM - " + kvmName);
-                            createAPIKVM(serverProfile, api, kvm);
-                            break;
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            for (String kvm : kvms) {
+                String kvmName = getKVMName(kvm);
+                if (kvmName == null) {
+                    throw new IllegalArgumentException(
+                       "KVM does not have a name.\n" + kvm + "\n");
+                }
+                items.add(new ReconcileItem(kvmName, kvm));
+            }
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingKVM, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "API KVM";
+                }
+                public String getScope() {
+                    return api;
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    createAPIKVM(serverProfile, api, getCreatePayload(item.getPayload()));
+                    KvmValueObject kvm = getValueObject(api, item);
+                    if (kvm.getEntryFile() != null) {
+                        kvmApi.update(kvm);
                     }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating API KVM - " + kvmName);
-                            createAPIKVM(serverProfile, api, kvm);
-                            break;
-                        case delete:
-                            logger.info("API KVM \"" + kvmName + 
-                                        "\" does not exist. Skipping.");
-                            break;
+                }
+                public void update(ReconcileItem item) throws IOException, MojoFailureException {
+                    KvmValueObject kvm = getValueObject(api, item);
+                    if (buildOption == OPTIONS.sync) {
+                        kvmApi.sync(kvm);
+                    } else {
+                        kvmApi.update(kvm);
                     }
-	        	}
-			}
-		
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteAPIKVM(serverProfile, api, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getAPIKVM(serverProfile, api).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    if (hasEntryFile(item)) {
+                        return null;
+                    }
+                    return RestUtil.getPayload(
+                            RestUtil.getAPIConfig(serverProfile, api, "keyvaluemaps", item.getName()));
+                }
+            });
+        
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
 														 e.getMessage());
@@ -423,36 +491,11 @@ public class KVMMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getOrgKVM(ServerProfile profile)
+    public static Set<String> getOrgKVM(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getOrgConfig(profile, "keyvaluemaps");
-        if(response == null) return new ArrayList();
-        JSONArray kvms = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"kvms\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            kvms    = (JSONArray)obj1.get("kvms");
-
-        } catch (ParseException pe){
-            logger.error("Get KVM parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get KVM error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return kvms;
-    }   
+        return RestUtil.listOrgConfig(profile, "keyvaluemaps", false).readAll();
+    }
 
     public static String createEnvKVM(ServerProfile profile, String kvm)
             throws IOException {
@@ -497,36 +540,11 @@ public class KVMMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getEnvKVM(ServerProfile profile)
+    public static Set<String> getEnvKVM(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getEnvConfig(profile, "keyvaluemaps");
-        if(response == null) return new ArrayList();
-        JSONArray kvms = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"kvms\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            kvms    = (JSONArray)obj1.get("kvms");
-
-        } catch (ParseException pe){
-            logger.error("Get KVM parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get KVM error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return kvms;
-    }   
+        return RestUtil.listEnvConfig(profile, "keyvaluemaps").readAll();
+    }
 
     public static String createAPIKVM(ServerProfile profile, 
                                         String api,
@@ -576,37 +594,11 @@ public class KVMMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getAPIKVM(ServerProfile profile, String api)
+    public static Set<String> getAPIKVM(ServerProfile profile, String api)
             throws IOException {
 
-        HttpResponse response = RestUtil.getAPIConfig(profile, api,
-                                                        "keyvaluemaps");
-        if(response == null) return new ArrayList();
-        JSONArray kvms = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"kvms\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            kvms    = (JSONArray)obj1.get("kvms");
-
-        } catch (ParseException pe){
-            logger.error("Get KVM parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get KVM error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return kvms;
-    }   
+        return RestUtil.listAPIConfig(profile, api, "keyvaluemaps").readAll();
+    }
 
 }
 
@@ -15,6 +15,8 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -42,10 +44,6 @@ import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create maskconfigs in Apigee EDGE.
@@ -115,7 +113,7 @@ public class MaskConfigMojo extends GatewayAbstractMojo
 
     protected void doOrgUpdate(List<String> masks) throws MojoFailureException {
         try {
-            List existingMasks = getOrgMaskConfig(serverProfile);
+            Set<String> existingMasks = getOrgMaskConfig(serverProfile);
             if (buildOption != OPTIONS.update && 
                 buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -123,52 +121,38 @@ public class MaskConfigMojo extends GatewayAbstractMojo
                 return;
             }
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
             for (String mask : masks) {
                 String maskName = getMaskConfigName(mask);
                 if (maskName == null) {
                     throw new IllegalArgumentException(
                        "Mask Config does not have a name.\n" + mask + "\n");
                 }
+                items.add(new ReconcileItem(maskName, mask));
+            }
 
-                if (existingMasks.contains(maskName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Org Mask Config \"" + maskName + 
-                                                    "\" exists. Updating.");
-                            updateOrgMaskConfig(serverProfile, maskName, mask);
-                            break;
-                        case create:
-                            logger.info("Org Mask Config \"" + maskName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Org Mask Config \"" + maskName + 
-                                "\" already exists. Deleting.");
-                            deleteOrgMaskConfig(serverProfile, maskName);
-                            break;
-                        case sync:
-                            logger.info("Org Mask Config \"" + maskName + 
-                                "\" already exists. Deleting and recreating.");
-                            deleteOrgMaskConfig(serverProfile, maskName);
-                            logger.info("Creating Org Mask Config - " + maskName);
-                            createOrgMaskConfig(serverProfile, mask);
-                            break;
-                    }
-                } else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Org Mask Config - " + maskName);
-                            createOrgMaskConfig(serverProfile, mask);
-                            break;
-                        case delete:
-                            logger.info("Org Mask Config \"" + maskName + 
-                                        "\" does not exist. Skipping.");
-                            break;
-                    }
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingMasks, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Org Mask Config";
                 }
-            }
+                public void create(ReconcileItem item) throws IOException {
+                    createOrgMaskConfig(serverProfile, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateOrgMaskConfig(serverProfile, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteOrgMaskConfig(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getOrgMaskConfig(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getOrgConfig(serverProfile, "maskconfigs", item.getName()));
+                }
+            });
         
         } catch (IOException e) {
             throw new MojoFailureException("Apigee network call error " +
@@ -178,10 +162,10 @@ public class MaskConfigMojo extends GatewayAbstractMojo
         }
     }
 
-	protected void doAPIUpdate(String api, List<String> masks)
+	protected void doAPIUpdate(final String api, List<String> masks)
                                                  throws MojoFailureException {
 		try {
-			List existingMasks = getAPIMaskConfig(serverProfile, api);
+			Set<String> existingMasks = getAPIMaskConfig(serverProfile, api);
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -189,53 +173,42 @@ public class MaskConfigMojo extends GatewayAbstractMojo
 				return;
 			}
 
-	        for (String mask : masks) {
-	        	String maskName = getMaskConfigName(mask);
-	        	if (maskName == null) {
-	        		throw new IllegalArgumentException(
-	        		   "Mask Config does not have a name.\n" + mask + "\n");
-	        	}
-
-        		if (existingMasks.contains(maskName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("API Mask Config \"" + maskName + 
-                                                    "\" exists. Updating.");
-                            updateAPIMaskConfig(serverProfile, api, maskName, mask);
-                            break;
-                        case create:
-                            logger.info("API Mask Config \"" + maskName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("API Mask Config \"" + maskName + 
-                                            "\" already exists. Deleting.");
-                            deleteAPIMaskConfig(serverProfile, api, maskName);
-                            break;
-                        case sync:
-                            logger.info("API Mask Config \"" + maskName + 
-                                            "\" already exists. Deleting and recreating.");
-                            deleteAPIMaskConfig(serverProfile, api, maskName);
-                            logger.info("Creating API Mask Config - " + maskName);
-                            createAPIMaskConfig(serverProfile, api, mask);
-                            break;
-                    }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating API Mask Config - " + maskName);
-                            createAPIMaskConfig(serverProfile, api, mask);
-                            break;
-                        case delete:
-                            logger.info("API Mask Config \"" + maskName + 
-                                        "\" does not exist. Skipping.");
-                            break;
-                    }
-	        	}
-			}
-		
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            for (String mask : masks) {
+                String maskName = getMaskConfigName(mask);
+                if (maskName == null) {
+                    throw new IllegalArgumentException(
+                       "Mask Config does not have a name.\n" + mask + "\n");
+                }
+                items.add(new ReconcileItem(maskName, mask));
+            }
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingMasks, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "API Mask Config";
+                }
+                public String getScope() {
+                    return api;
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createAPIMaskConfig(serverProfile, api, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateAPIMaskConfig(serverProfile, api, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteAPIMaskConfig(serverProfile, api, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getAPIMaskConfig(serverProfile, api).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getAPIConfig(serverProfile, api, "maskconfigs", item.getName()));
+                }
+            });
+        
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
 														 e.getMessage());
@@ -371,36 +344,11 @@ public class MaskConfigMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getOrgMaskConfig(ServerProfile profile)
+    public static Set<String> getOrgMaskConfig(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getOrgConfig(profile, "maskconfigs");
-        if(response == null) return new ArrayList();
-        JSONArray masks = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"masks\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            masks    = (JSONArray)obj1.get("masks");
-
-        } catch (ParseException pe){
-            logger.error("Get Mask Config parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Mask Config error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return masks;
-    }   
+        return RestUtil.listOrgConfig(profile, "maskconfigs", false).readAll();
+    }
 
     public static String createAPIMaskConfig(ServerProfile profile, 
                                         String api,
@@ -476,37 +424,11 @@ public class MaskConfigMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getAPIMaskConfig(ServerProfile profile, String api)
+    public static Set<String> getAPIMaskConfig(ServerProfile profile, String api)
             throws IOException {
 
-        HttpResponse response = RestUtil.getAPIConfig(profile, api, 
-                                                        "maskconfigs");
-        if(response == null) return new ArrayList();
-        JSONArray masks = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"masks\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            masks    = (JSONArray)obj1.get("masks");
-
-        } catch (ParseException pe){
-            logger.error("Get Mask Config parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Mask Config error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return masks;
-    }   
+        return RestUtil.listAPIConfig(profile, api, "maskconfigs").readAll();
+    }
 
 }
 
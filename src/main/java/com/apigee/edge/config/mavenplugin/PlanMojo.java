@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.mavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcilePlan;
+
+/**
+ * Goal to print the create/update/delete plan of all config types for
+ * apigee.config.options without changing Apigee. Remote state of each
+ * config type is fetched once and compared with the local config.
+ *
+ * The plan is written to apigee.config.planFile when set; running the
+ * config goals with the same planFile applies only the planned operations.
+ *
+ * @goal plan
+ * @phase install
+ */
+public class PlanMojo extends GatewayAbstractMojo
+{
+	static Logger logger = LoggerFactory.getLogger(PlanMojo.class);
+	public static final String ____ATTENTION_MARKER____ =
+	"************************************************************************";
+
+	public PlanMojo() {
+		super();
+	}
+
+	/**
+	 * Config goals in the order they are applied
+	 */
+	protected GatewayAbstractMojo[] getGoals() {
+		return new GatewayAbstractMojo[] {
+			new CacheMojo(),
+			new TargetServerMojo(),
+			new KVMMojo(),
+			new ResourceFileMojo(),
+			new FlowHookMojo(),
+			new MaskConfigMojo(),
+			new APIProductMojo(),
+			new DeveloperMojo(),
+			new AppMojo()
+		};
+	}
+
+	/**
+	 * Entry point for the mojo.
+	 */
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (super.isSkip()) {
+			getLog().info("Skipping");
+			return;
+		}
+
+		if (getOptions() == null || getOptions().equals("none")) {
+			logger.info("No apigee.config.options given. Planning update.");
+			setOptions("update");
+		}
+		setConfigPlan(true);
+		ReconcilePlan plan = ReconcilePlan.start(getPluginContext());
+
+		for (GatewayAbstractMojo goal : getGoals()) {
+			configure(goal);
+			goal.execute();
+		}
+
+		logger.info(____ATTENTION_MARKER____);
+		plan.report(logger);
+		logger.info(____ATTENTION_MARKER____);
+	}
+}
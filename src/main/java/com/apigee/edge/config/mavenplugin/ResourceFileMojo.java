@@ -15,20 +15,29 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ContentDigest;
+import com.apigee.edge.config.mavenplugin.reconcile.DigestLedger;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
+import com.apigee.edge.config.rest.PagedListing;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 import com.google.api.client.http.HttpResponse;
@@ -71,6 +80,10 @@ public class ResourceFileMojo extends GatewayAbstractMojo
         public String revision;
     }
 	
+	private DigestLedger ledger;
+	private final AtomicInteger unchangedFiles = new AtomicInteger();
+	private final AtomicLong unchangedBytes = new AtomicLong();
+
 	public ResourceFileMojo() {
 		super();
 
@@ -92,14 +105,105 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 			}
 			logger.debug("Build option " + buildOption.name());
 			logger.debug("Base dir " + super.getBaseDirectoryPath());
+			ledger = DigestLedger.forPath(serverProfile.getResourceFileLedger());
 		} catch (IllegalArgumentException e) {
 			throw new RuntimeException("Invalid apigee.option provided");
+		} catch (IOException e) {
+			throw new MojoFailureException("Unable to read " +
+					serverProfile.getResourceFileLedger() + " " + e.getMessage());
 		} catch (RuntimeException e) {
 			throw e;
 		}
 
 	}
 
+	/**
+	 * SHA-256 of the resource file in Apigee, null when it does not exist.
+	 * With apigee.resourcefile.ledger the digest of the last upload is used
+	 * and nothing is downloaded.
+	 */
+	protected String getRemoteDigest(String scope, String parent,
+									 ResourceFile resourceFile)
+			throws IOException {
+		if (ledger != null) {
+			String digest = ledger.get(getLedgerKey(scope, parent, resourceFile));
+			if (digest != null) {
+				return digest;
+			}
+		}
+		HttpResponse response;
+		if (scope.equals("org")) {
+			response = RestUtil.getOrgConfig(serverProfile,
+					"resourcefiles/" + resourceFile.type, resourceFile.name);
+		} else if (scope.equals("env")) {
+			response = RestUtil.getEnvConfig(serverProfile,
+					"resourcefiles/" + resourceFile.type, resourceFile.name);
+		} else {
+			response = RestUtil.getAPIConfig(serverProfile, parent,
+					"revisions/" + resourceFile.revision + "/resourcefiles/"
+					+ resourceFile.type, resourceFile.name);
+		}
+		if (response == null) {
+			return null;
+		}
+		InputStream content = response.getContent();
+		try {
+			return ContentDigest.sha256(content);
+		} finally {
+			content.close();
+		}
+	}
+
+	/**
+	 * Compares the digest of the local file, counting the bytes not uploaded
+	 */
+	protected boolean isUnchangedFile(ResourceFile resourceFile,
+									  String remoteDigest) {
+		try {
+			File file = new File(resourceFile.file);
+			if (ContentDigest.sha256(file).equals(remoteDigest)) {
+				unchangedFiles.incrementAndGet();
+				unchangedBytes.addAndGet(file.length());
+				return true;
+			}
+		} catch (IOException e) {
+			logger.debug("Digest of " + resourceFile.file + " failed " +
+														e.getMessage());
+		}
+		return false;
+	}
+
+	protected void recordUpload(String scope, String parent,
+								ResourceFile resourceFile) throws IOException {
+		if (ledger != null) {
+			ledger.put(getLedgerKey(scope, parent, resourceFile),
+						ContentDigest.sha256(new File(resourceFile.file)));
+		}
+	}
+
+	private String getLedgerKey(String scope, String parent,
+								ResourceFile resourceFile) {
+		return serverProfile.getHostUrl() + "/" + serverProfile.getOrg() + "/"
+				+ scope + (parent != null ? "/" + parent : "")
+				+ (scope.equals("api") ? "/" + resourceFile.revision : "")
+				+ "/" + resourceFile.type + "/" + resourceFile.name;
+	}
+
+	private void finish(Logger logger) {
+		if (unchangedFiles.get() > 0) {
+			logger.info("Resource files unchanged: " + unchangedFiles.get() +
+					" file(s), " + unchangedBytes.get() + " bytes not uploaded");
+		}
+		if (ledger != null) {
+			try {
+				ledger.save();
+			} catch (IOException e) {
+				logger.error("Unable to write " +
+						serverProfile.getResourceFileLedger() + " " + e.getMessage());
+			}
+		}
+	}
+
 	protected ResourceFile getResourceFile(String payload) throws MojoFailureException {
 		Gson gson = new Gson();
 		try {
@@ -110,10 +214,20 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * The item as parsed when the items were built, remote only items are
+	 * parsed from their payload
+	 */
+	protected ResourceFile getResourceFile(Map<String, ResourceFile> parsed,
+										   ReconcileItem item) throws MojoFailureException {
+		ResourceFile resourceFile = parsed.get(item.getKey());
+		return (resourceFile != null) ? resourceFile : getResourceFile(item.getPayload());
+	}
+
     protected void doOrgUpdate(List<String> resourcefiles, String scope)
                                                  throws MojoFailureException {
         try {
-            List existingResourcefile = getExistingResourceFile(serverProfile, "org", null);
+            Set<String> existingResourcefile = getExistingResourceFile(serverProfile, "org", null);
             if (buildOption != OPTIONS.update && 
                 buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -121,54 +235,65 @@ public class ResourceFileMojo extends GatewayAbstractMojo
                 return;
             }
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            final Map<String, ResourceFile> parsed = new HashMap<String, ResourceFile>();
             for (String resourcefile : resourcefiles) {
-                String resourcefileName = getResourceFile(resourcefile).name;
-                String resourcefileType = getResourceFile(resourcefile).type;
-                String resourcefilePath = getResourceFile(resourcefile).file;
-                if (resourcefileName == null) {
+                ResourceFile resourceFile = getResourceFile(resourcefile);
+                if (resourceFile.name == null) {
                     throw new IllegalArgumentException(
                        "Resource File does not have a name.\n" + resourcefile + "\n");
                 }
+                String key = resourceFile.name + "_" + resourceFile.type;
+                items.add(new ReconcileItem(key, resourceFile.name, resourcefile));
+                parsed.put(key, resourceFile);
+            }
 
-                if (existingResourcefile.contains(resourcefileName+"_"+resourcefileType)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Org Resource File \"" + resourcefileName + 
-                                                    "\" exists. Updating.");
-                            updateOrgResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                        case create:
-                            logger.info("Org Resource File \"" + resourcefileName + " of type "+ resourcefileType+
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Org Resource File \"" + resourcefileName + " of type "+ resourcefileType+ 
-                                "\" already exists. Deleting.");
-                            deleteOrgResourceFile(serverProfile, resourcefileType, resourcefileName);
-                            break;
-                        case sync:
-                            logger.info("Org Resource File \"" + resourcefileName + " of type "+ resourcefileType+
-                                "\" already exists. Deleting and recreating.");
-                            deleteOrgResourceFile(serverProfile, resourcefileType, resourcefileName);
-                            logger.info("Creating Org Resource File - " + resourcefileName);
-                            createOrgResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                    }
-                } else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Org Resource File - " + resourcefileName + " of type "+ resourcefileType);
-                            createOrgResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                        case delete:
-                            logger.info("Org Resource File \"" + resourcefileName + " of type "+ resourcefileType+ 
-                                        "\" does not exist. Skipping.");
-                            break;
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingResourcefile, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Org Resource File";
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    createOrgResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name, resourceFile.file);
+                    recordUpload("org", null, resourceFile);
+                }
+                public void update(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    updateOrgResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name, resourceFile.file);
+                    recordUpload("org", null, resourceFile);
+                }
+                public void delete(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    deleteOrgResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name);
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    return getRemoteDigest("org", null,
+                                        getResourceFile(parsed, item));
+                }
+                public boolean isUnchanged(ReconcileItem item, String remote) {
+                    try {
+                        return isUnchangedFile(getResourceFile(parsed, item),
+                                                                    remote);
+                    } catch (MojoFailureException e) {
+                        return false;
                     }
                 }
-            }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getExistingResourceFile(serverProfile, "org", null)
+                                .contains(item.getKey());
+                }
+                public ReconcileItem getRemoteItem(String key) {
+                    return getRemoteResourceFile(key);
+                }
+            });
         
         } catch (IOException e) {
             throw new MojoFailureException("Apigee network call error " +
@@ -181,7 +306,7 @@ public class ResourceFileMojo extends GatewayAbstractMojo
     protected void doEnvUpdate(List<String> resourcefiles, String scope)
                                                  throws MojoFailureException {
         try {
-            List existingResourcefile = getExistingResourceFile(serverProfile, "env", null);
+            Set<String> existingResourcefile = getExistingResourceFile(serverProfile, "env", null);
             if (buildOption != OPTIONS.update && 
                 buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -189,54 +314,65 @@ public class ResourceFileMojo extends GatewayAbstractMojo
                 return;
             }
 
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            final Map<String, ResourceFile> parsed = new HashMap<String, ResourceFile>();
             for (String resourcefile : resourcefiles) {
-                String resourcefileName = getResourceFile(resourcefile).name;
-                String resourcefileType = getResourceFile(resourcefile).type;
-                String resourcefilePath = getResourceFile(resourcefile).file;
-                if (resourcefileName == null) {
+                ResourceFile resourceFile = getResourceFile(resourcefile);
+                if (resourceFile.name == null) {
                     throw new IllegalArgumentException(
                        "resourcefile does not have a name.\n" + resourcefile + "\n");
                 }
+                String key = resourceFile.name + "_" + resourceFile.type;
+                items.add(new ReconcileItem(key, resourceFile.name, resourcefile));
+                parsed.put(key, resourceFile);
+            }
 
-                if (existingResourcefile.contains(resourcefileName+"_"+resourcefileType)) {
-                    switch (buildOption) {
-                    case update:
-                        logger.info("Env Resource File \"" + resourcefileName + 
-                                                "\" exists. Updating.");
-                        updateEnvResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-                        break;
-                    case create:
-                        logger.info("Env Resource File \"" + resourcefileName + " of type "+ resourcefileType+
-                                            "\" already exists. Skipping.");
-                        break;
-                    case delete:
-                        logger.info("Env Resource File \"" + resourcefileName + " of type "+ resourcefileType+ 
-                            "\" already exists. Deleting.");
-                        deleteEnvResourceFile(serverProfile, resourcefileType, resourcefileName);
-                        break;
-                    case sync:
-                        logger.info("Env Resource File \"" + resourcefileName + " of type "+ resourcefileType+
-                            "\" already exists. Deleting and recreating.");
-                        deleteEnvResourceFile(serverProfile, resourcefileType, resourcefileName);
-                        logger.info("Creating Env Resource File - " + resourcefileName);
-                        createEnvResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-                        break;
-                    }
-                } else {
-                    switch (buildOption) {
-	                    case create:
-	                    case sync:
-	                    case update:
-	                        logger.info("Creating Env Resource File - " + resourcefileName + " of type "+ resourcefileType);
-	                        createEnvResourceFile(serverProfile, resourcefileType, resourcefileName, resourcefilePath);
-	                        break;
-	                    case delete:
-	                        logger.info("Env Resource File \"" + resourcefileName + " of type "+ resourcefileType+ 
-	                                    "\" does not exist. Skipping.");
-	                        break;
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingResourcefile, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Env Resource File";
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    createEnvResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name, resourceFile.file);
+                    recordUpload("env", serverProfile.getEnvironment(), resourceFile);
+                }
+                public void update(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    updateEnvResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name, resourceFile.file);
+                    recordUpload("env", serverProfile.getEnvironment(), resourceFile);
+                }
+                public void delete(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    deleteEnvResourceFile(serverProfile, resourceFile.type,
+                                            resourceFile.name);
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    return getRemoteDigest("env", serverProfile.getEnvironment(),
+                                        getResourceFile(parsed, item));
+                }
+                public boolean isUnchanged(ReconcileItem item, String remote) {
+                    try {
+                        return isUnchangedFile(getResourceFile(parsed, item),
+                                                                    remote);
+                    } catch (MojoFailureException e) {
+                        return false;
                     }
                 }
-            }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getExistingResourceFile(serverProfile, "env", null)
+                                .contains(item.getKey());
+                }
+                public ReconcileItem getRemoteItem(String key) {
+                    return getRemoteResourceFile(key);
+                }
+            });
         
         } catch (IOException e) {
             throw new MojoFailureException("Apigee network call error " +
@@ -246,10 +382,9 @@ public class ResourceFileMojo extends GatewayAbstractMojo
         }
     }
 
-	protected void doAPIUpdate(String api, List<String> resourcefiles)
+	protected void doAPIUpdate(final String api, List<String> resourcefiles)
                                                  throws MojoFailureException {
 		try {
-			//List existingResourcefile = getExistingResourceFile(serverProfile, "api", api);
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -257,57 +392,81 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 				return;
 			}
 
-	        for (String resourcefile : resourcefiles) {
-	        	String resourcefileName = getResourceFile(resourcefile).name;
-                String resourcefileType = getResourceFile(resourcefile).type;
-                String resourcefilePath = getResourceFile(resourcefile).file;
-                String revision = getResourceFile(resourcefile).revision;
-                if (resourcefileName == null) {
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            final Map<String, ResourceFile> parsed = new HashMap<String, ResourceFile>();
+            /* only local files are looked up, the revision also lists the
+             * proxy bundle's own resources which must never be pruned */
+            List<String> existingResourcefile = new ArrayList<String>();
+            /* files in Apigee by revision, each revision is listed once */
+            Map<String, Set<String>> inventory = new HashMap<String, Set<String>>();
+            for (String resourcefile : resourcefiles) {
+                ResourceFile resourceFile = getResourceFile(resourcefile);
+                if (resourceFile.name == null) {
                     throw new IllegalArgumentException(
                        "resourcefile does not have a name.\n" + resourcefile + "\n");
                 }
+                String key = resourceFile.revision + "/" +
+                                resourceFile.name + "_" + resourceFile.type;
+                items.add(new ReconcileItem(key, resourceFile.name, resourcefile));
+                parsed.put(key, resourceFile);
+
+                Set<String> existing = inventory.get(resourceFile.revision);
+                if (existing == null) {
+                    existing = getExistingResourceFile(
+                            serverProfile, "api", api + "/revisions/" + resourceFile.revision);
+                    inventory.put(resourceFile.revision, existing);
+                }
+                if (existing.contains(resourceFile.name + "_" + resourceFile.type)) {
+                    existingResourcefile.add(key);
+                }
+            }
+            if (buildOption == OPTIONS.sync && serverProfile.isConfigPrune()) {
+                logger.info("Prune does not apply to API resource files of " + api
+                        + ", files of the API revision are kept.");
+            }
 
-				List existingResourcefile = getExistingResourceFile(serverProfile, "api", api+"/revisions/"+revision);
-
-                if (existingResourcefile.contains(resourcefileName+"_"+resourcefileType)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("API Resource File \"" + resourcefileName + 
-                                                    "\" exists. Updating.");
-                            updateAPIResourceFile(serverProfile, api, revision, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                        case create:
-                            logger.info("API Resource File \"" + resourcefileName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("API Resource File \"" + resourcefileName + 
-                                            "\" already exists. Deleting.");
-                            deleteAPIResourceFile(serverProfile, api, revision, resourcefileType, resourcefileName);
-                            break;
-                        case sync:
-                            logger.info("API Resource File \"" + resourcefileName + 
-                                            "\" already exists. Deleting and recreating.");
-                            deleteAPIResourceFile(serverProfile, api, revision, resourcefileType, resourcefileName);
-                            logger.info("Creating API Resource File - " + resourcefileName);
-                            createAPIResourceFile(serverProfile, api, revision, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                    }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating API Resource File - " + resourcefileName);
-                            createAPIResourceFile(serverProfile, api, revision, resourcefileType, resourcefileName, resourcefilePath);
-                            break;
-                        case delete:
-                            logger.info("API Resource File \"" + resourcefileName + 
-                                        "\" does not exist. Skipping.");
-                            break;
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingResourcefile, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "API Resource File";
+                }
+                public String getScope() {
+                    return api;
+                }
+                public void create(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    createAPIResourceFile(serverProfile, api, resourceFile.revision,
+                            resourceFile.type, resourceFile.name, resourceFile.file);
+                    recordUpload("api", api, resourceFile);
+                }
+                public void update(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    updateAPIResourceFile(serverProfile, api, resourceFile.revision,
+                            resourceFile.type, resourceFile.name, resourceFile.file);
+                    recordUpload("api", api, resourceFile);
+                }
+                public void delete(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    ResourceFile resourceFile = getResourceFile(parsed, item);
+                    deleteAPIResourceFile(serverProfile, api, resourceFile.revision,
+                            resourceFile.type, resourceFile.name);
+                }
+                public String getRemote(ReconcileItem item)
+                        throws IOException, MojoFailureException {
+                    return getRemoteDigest("api", api,
+                                        getResourceFile(parsed, item));
+                }
+                public boolean isUnchanged(ReconcileItem item, String remote) {
+                    try {
+                        return isUnchangedFile(getResourceFile(parsed, item),
+                                                                    remote);
+                    } catch (MojoFailureException e) {
+                        return false;
                     }
-	        	}
-			}
+                }
+            });
 		
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
@@ -317,6 +476,21 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 		}
 	}
 
+	/**
+	 * Resource file known only by its key (name_type) in Apigee
+	 */
+	protected static ReconcileItem getRemoteResourceFile(String key) {
+		int i = key.lastIndexOf('_');
+		if (i <= 0) {
+			return null;
+		}
+		JSONObject resourceFile = new JSONObject();
+		resourceFile.put("name", key.substring(0, i));
+		resourceFile.put("type", key.substring(i + 1));
+		return new ReconcileItem(key, key.substring(0, i),
+								resourceFile.toJSONString());
+	}
+
 	/** 
 	 * Entry point for the mojo.
 	 */
@@ -381,6 +555,8 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 			throw e;
 		} catch (RuntimeException e) {
 			throw e;
+		} finally {
+			finish(logger);
 		}
 	}
 
@@ -514,45 +690,21 @@ public class ResourceFileMojo extends GatewayAbstractMojo
 		return "";
 	}
 	
-	public static List getExistingResourceFile(ServerProfile profile, String scope, String api) throws IOException {
+	public static Set<String> getExistingResourceFile(ServerProfile profile, String scope, String api) throws IOException {
 
-		HttpResponse response = null;
+		PagedListing listing = null;
 		if(scope!=null && scope.equalsIgnoreCase("org")){
-			response = RestUtil.getOrgConfig(profile, "resourcefiles");
+			listing = RestUtil.listOrgConfig(profile, "resourcefiles", false, "name", "type");
 		}else if(scope!=null && scope.equalsIgnoreCase("env")){
-			response = RestUtil.getEnvConfig(profile, "resourcefiles");
+			listing = RestUtil.listEnvConfig(profile, "resourcefiles", "name", "type");
 		}
 		else if(scope!=null && scope.equalsIgnoreCase("api")){
-			response = RestUtil.getAPIConfig(profile, api, "resourcefiles");
+			listing = RestUtil.listAPIConfig(profile, api, "resourcefiles", "name", "type");
 		}
-		if (response == null)
-			return new ArrayList();
-		JSONArray resourcefilesArr = null;
-		List resourcefiles = new ArrayList();
-		;
-		try {
-			logger.debug("output " + response.getContentType());
-			// response can be read only once
-			String payload = response.parseAsString();
-			logger.debug(payload);
-			JSONParser parser = new JSONParser();
-			JSONObject obj1 = (JSONObject) parser.parse(payload);
-			resourcefilesArr = (JSONArray) obj1.get("resourceFile");
-			if (resourcefilesArr != null && resourcefilesArr.size() > 0) {
-				for (int i = 0; i < resourcefilesArr.size(); i++) {
-					JSONObject resourcefile = (JSONObject) resourcefilesArr.get(i);
-					resourcefiles.add(resourcefile.get("name") + "_" + resourcefile.get("type"));
-				}
-			}
-		} catch (ParseException pe) {
-			logger.error("Get resourcefiles parse error " + pe.getMessage());
-			throw new IOException(pe.getMessage());
-		} catch (HttpResponseException e) {
-			logger.error("Get resourcefiles error " + e.getMessage());
-			throw new IOException(e.getMessage());
-		}
-		return resourcefiles;
-	}  
+		if (listing == null)
+			return new HashSet<String>();
+		return listing.readAll();
+	}
 	
 	public static String createAPIResourceFile(ServerProfile serverProfile, 
 												  String api, String revision, 
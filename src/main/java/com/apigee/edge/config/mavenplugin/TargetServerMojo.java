@@ -15,6 +15,8 @@
  */
 package com.apigee.edge.config.mavenplugin;
 
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileHandler;
+import com.apigee.edge.config.mavenplugin.reconcile.ReconcileItem;
 import com.apigee.edge.config.rest.RestUtil;
 import com.apigee.edge.config.utils.ServerProfile;
 
@@ -35,16 +37,13 @@ import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import java.util.ArrayList;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.api.client.http.*;
 import org.json.simple.JSONValue;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**                                                                                                                                     ¡¡
  * Goal to create target servers in Apigee EDGE.
@@ -114,7 +113,7 @@ public class TargetServerMojo extends GatewayAbstractMojo
 
 	protected void doUpdate(List<String> targets) throws MojoFailureException {
 		try {
-			List existingTargets = null;
+			Set<String> existingTargets = null;
 			if (buildOption != OPTIONS.update && 
 				buildOption != OPTIONS.create && 
                 buildOption != OPTIONS.delete && 
@@ -126,53 +125,39 @@ public class TargetServerMojo extends GatewayAbstractMojo
                                                 serverProfile.getEnvironment());
 			existingTargets = getTarget(serverProfile);
 
-	        for (String target : targets) {
-	        	String targetName = getTargetName(target);
-	        	if (targetName == null) {
-	        		throw new IllegalArgumentException(
-	        		   "Target Server does not have a name.\n" + target + "\n");
-	        	}
-
-        		if (existingTargets.contains(targetName)) {
-                    switch (buildOption) {
-                        case update:
-                            logger.info("Target Server \"" + targetName + 
-                                                    "\" exists. Updating.");
-                            updateTarget(serverProfile, targetName, target);
-                            break;
-                        case create:
-                            logger.info("Target Server \"" + targetName + 
-                                                "\" already exists. Skipping.");
-                            break;
-                        case delete:
-                            logger.info("Target Server \"" + targetName + 
-                                            "\" already exists. Deleting.");
-                            deleteTarget(serverProfile, targetName);
-                            break;
-                        case sync:
-                            logger.info("Target Server \"" + targetName + 
-                                            "\" already exists. Deleting and recreating.");
-                            deleteTarget(serverProfile, targetName);
-                            logger.info("Creating Target Server - " + targetName);
-                            createTarget(serverProfile, target);
-                            break;
-                    }
-	        	} else {
-                    switch (buildOption) {
-                        case create:
-                        case sync:
-                        case update:
-                            logger.info("Creating Target Server - " + targetName);
-                            createTarget(serverProfile, target);
-                            break;
-                        case delete:
-                            logger.info("Target Server \"" + targetName + 
-                                        "\" does not exist. Skipping.");
-                            break;
-                    }
-	        	}
-			}
-		
+            List<ReconcileItem> items = new ArrayList<ReconcileItem>();
+            for (String target : targets) {
+                String targetName = getTargetName(target);
+                if (targetName == null) {
+                    throw new IllegalArgumentException(
+                       "Target Server does not have a name.\n" + target + "\n");
+                }
+                items.add(new ReconcileItem(targetName, target));
+            }
+
+            getReconcileEngine(serverProfile).reconcile(buildOption.name(),
+                    items, existingTargets, new ReconcileHandler() {
+                public String getResourceType() {
+                    return "Target Server";
+                }
+                public void create(ReconcileItem item) throws IOException {
+                    createTarget(serverProfile, item.getPayload());
+                }
+                public void update(ReconcileItem item) throws IOException {
+                    updateTarget(serverProfile, item.getName(), item.getPayload());
+                }
+                public void delete(ReconcileItem item) throws IOException {
+                    deleteTarget(serverProfile, item.getName());
+                }
+                public Boolean exists(ReconcileItem item) throws IOException {
+                    return getTarget(serverProfile).contains(item.getKey());
+                }
+                public String getRemote(ReconcileItem item) throws IOException {
+                    return RestUtil.getPayload(
+                            RestUtil.getEnvConfig(serverProfile, "targetservers", item.getName()));
+                }
+            });
+        
 		} catch (IOException e) {
 			throw new MojoFailureException("Apigee network call error " +
 														 e.getMessage());
@@ -293,36 +278,11 @@ public class TargetServerMojo extends GatewayAbstractMojo
         return "";
     }
 
-    public static List getTarget(ServerProfile profile)
+    public static Set<String> getTarget(ServerProfile profile)
             throws IOException {
 
-        HttpResponse response = RestUtil.getEnvConfig(profile, "targetservers");
-        if(response == null) return new ArrayList();
-        JSONArray targets = null;
-        try {
-            logger.debug("output " + response.getContentType());
-            // response can be read only once
-            String payload = response.parseAsString();
-            logger.debug(payload);
-
-            /* Parsers fail to parse a string array.
-             * converting it to an JSON object as a workaround */
-            String obj = "{ \"targets\": " + payload + "}";
-
-            JSONParser parser = new JSONParser();                
-            JSONObject obj1     = (JSONObject)parser.parse(obj);
-            targets    = (JSONArray)obj1.get("targets");
-
-        } catch (ParseException pe){
-            logger.error("Get Target Server parse error " + pe.getMessage());
-            throw new IOException(pe.getMessage());
-        } catch (HttpResponseException e) {
-            logger.error("Get Target Server error " + e.getMessage());
-            throw new IOException(e.getMessage());
-        }
-
-        return targets;
-    }	
+        return RestUtil.listEnvConfig(profile, "targetservers").readAll();
+    }
 }
 
 
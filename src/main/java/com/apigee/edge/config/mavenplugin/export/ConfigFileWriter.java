@@ -0,0 +1,115 @@
+package com.apigee.edge.config.mavenplugin.export;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams one config file of the apigee.config.dir layout.
+ *
+ * list  - [ {entity}, ... ]                  e.g. org/apiProducts.json
+ * keyed - { "key": [ {entity}, ... ], ... }  e.g. org/developerApps.json
+ *
+ * Entities are fetched in parallel and handed in with the index they were
+ * listed at; they are written in that order as soon as all earlier indexes
+ * arrived, so the file does not depend on the number of threads.
+ */
+public class ConfigFileWriter {
+
+    private final File file;
+    private final boolean keyed;
+    private final JsonWriter writer;
+    private final Gson gson = new Gson();
+    private final Map<Integer, Entry> pending = new HashMap<Integer, Entry>();
+    private int next;
+    private int count;
+
+    private static class Entry {
+        final String key;
+        final List<JsonElement> elements;
+
+        Entry(String key, List<JsonElement> elements) {
+            this.key = key;
+            this.elements = elements;
+        }
+    }
+
+    public ConfigFileWriter(File file, boolean keyed) throws IOException {
+        this.file = file;
+        this.keyed = keyed;
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        this.writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                                    new FileOutputStream(file), "UTF-8")));
+        this.writer.setIndent("    ");
+        if (keyed) {
+            this.writer.beginObject();
+        } else {
+            this.writer.beginArray();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of entities written
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public void write(int index, JsonElement element) throws IOException {
+        write(index, null, Collections.singletonList(element));
+    }
+
+    /**
+     * Entities listed at index; key is the property name in a keyed file
+     */
+    public synchronized void write(int index, String key,
+                                   List<JsonElement> elements)
+            throws IOException {
+        pending.put(index, new Entry(key, elements));
+        while (pending.containsKey(next)) {
+            Entry entry = pending.remove(next++);
+            if (keyed) {
+                if (entry.key == null) continue;
+                writer.name(entry.key);
+                writer.beginArray();
+            }
+            for (JsonElement element : entry.elements) {
+                gson.toJson(element, writer);
+                count++;
+            }
+            if (keyed) {
+                writer.endArray();
+            }
+        }
+    }
+
+    /**
+     * Nothing to write at index, e.g. the entity could not be read
+     */
+    public void skip(int index) throws IOException {
+        write(index, null, Collections.<JsonElement>emptyList());
+    }
+
+    public synchronized void close() throws IOException {
+        if (keyed) {
+            writer.endObject();
+        } else {
+            writer.endArray();
+        }
+        writer.close();
+    }
+}
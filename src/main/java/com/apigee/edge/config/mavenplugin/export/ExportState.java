@@ -0,0 +1,156 @@
+package com.apigee.edge.config.mavenplugin.export;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Watermark and per entity lastModifiedAt and digest of the previous
+ * export, kept next to the export file for incremental exports.
+ *
+ * {"watermark": n, "fullExportAt": n,
+ *  "entities": {"key": {"lastModifiedAt": n, "digest": "..."}}}
+ *
+ * The watermark is the newest lastModifiedAt seen, fullExportAt the time
+ * of the last export that fetched all entities. An entity is unchanged
+ * when it has the same lastModifiedAt as before and its exported record
+ * still has the same digest; the digest only detects edits of the export
+ * file, changes that do not update lastModifiedAt are not seen.
+ */
+public class ExportState {
+
+    private static class Entity {
+        final long lastModifiedAt;
+        final String digest;
+
+        Entity(long lastModifiedAt, String digest) {
+            this.lastModifiedAt = lastModifiedAt;
+            this.digest = digest;
+        }
+    }
+
+    private final Map<String, Entity> entities = new TreeMap<String, Entity>();
+    private long watermark;
+    private long fullExportAt;
+
+    /**
+     * State of the previous export, empty when there is none
+     */
+    public static ExportState read(File file) throws IOException {
+        ExportState state = new ExportState();
+        if (!file.exists()) {
+            return state;
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                                    new FileInputStream(file), "UTF-8"));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("watermark")) {
+                    state.watermark = reader.nextLong();
+                } else if (name.equals("fullExportAt")) {
+                    state.fullExportAt = reader.nextLong();
+                } else if (name.equals("entities")) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String key = reader.nextName();
+                        long lastModifiedAt = 0;
+                        String digest = null;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String field = reader.nextName();
+                            if (field.equals("lastModifiedAt")) {
+                                lastModifiedAt = reader.nextLong();
+                            } else if (field.equals("digest")) {
+                                digest = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        state.entities.put(key, new Entity(lastModifiedAt, digest));
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Invalid export state " + file + " " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return state;
+    }
+
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public synchronized long getFullExportAt() {
+        return fullExportAt;
+    }
+
+    public synchronized void setFullExportAt(long fullExportAt) {
+        this.fullExportAt = fullExportAt;
+    }
+
+    public synchronized int size() {
+        return entities.size();
+    }
+
+    public synchronized boolean isUnchanged(String key, long lastModifiedAt,
+                                            String digest) {
+        Entity entity = entities.get(key);
+        return entity != null && lastModifiedAt > 0
+                && entity.lastModifiedAt == lastModifiedAt
+                && entity.digest != null && entity.digest.equals(digest);
+    }
+
+    public synchronized void put(String key, long lastModifiedAt, String digest) {
+        entities.put(key, new Entity(lastModifiedAt, digest));
+        watermark = Math.max(watermark, lastModifiedAt);
+    }
+
+    /**
+     * Writes the state to a temporary file that replaces file
+     */
+    public synchronized void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                                    new FileOutputStream(tmp), "UTF-8")));
+        try {
+            writer.beginObject();
+            writer.name("watermark").value(watermark);
+            writer.name("fullExportAt").value(fullExportAt);
+            writer.name("entities").beginObject();
+            for (Map.Entry<String, Entity> entry : entities.entrySet()) {
+                writer.name(entry.getKey()).beginObject();
+                writer.name("lastModifiedAt").value(entry.getValue().lastModifiedAt);
+                writer.name("digest").value(entry.getValue().digest);
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+    }
+}
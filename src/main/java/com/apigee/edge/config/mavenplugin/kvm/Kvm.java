@@ -9,4 +9,7 @@ public interface Kvm {
     public void update(KvmValueObject kvmValueObject)
             throws IOException, MojoFailureException;
 
+    public void sync(KvmValueObject kvmValueObject)
+            throws IOException, MojoFailureException;
+
 }
@@ -1,20 +1,50 @@
 package com.apigee.edge.config.mavenplugin.kvm;
 
 import com.apigee.edge.config.rest.RestUtil;
+import com.apigee.edge.config.utils.ServerProfile;
 import com.google.api.client.http.HttpResponse;
 import org.apache.maven.plugin.MojoFailureException;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.Map;
 
 public class KvmApi extends KvmOperations implements Kvm {
 
     @Override
-    public HttpResponse getEntriesForKvm(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException {
+    public HttpResponse getKeysForKvm(KvmValueObject kvmValueObject, Map<String, Object> params) throws IOException {
+        return RestUtil.getAPIConfig(kvmValueObject.getProfile(),
+                kvmValueObject.getApi(),
+                "keyvaluemaps",
+                kvmValueObject.getKvmName(),
+                "keys",
+                params);
+    }
+
+    @Override
+    public HttpResponse getKvm(KvmValueObject kvmValueObject) throws IOException {
+        return RestUtil.getAPIConfig(kvmValueObject.getProfile(),
+                kvmValueObject.getApi(),
+                "keyvaluemaps",
+                kvmValueObject.getKvmName());
+    }
+
+    @Override
+    public HttpResponse getKvmEntry(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException {
         return RestUtil.getAPIConfig(kvmValueObject.getProfile(),
                 kvmValueObject.getApi(),
                 "keyvaluemaps",
                 kvmValueObject.getKvmName(),
                 "entries",
+                URLEncoder.encode(kvmEntryName, "UTF-8"));
+    }
+
+    @Override
+    public HttpResponse deleteKvmEntries(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException {
+        return RestUtil.deleteAPIConfig(kvmValueObject.getProfile(),
+                kvmValueObject.getApi(),
+                "keyvaluemaps/" + URLEncoder.encode(kvmValueObject.getKvmName(), "UTF-8")
+                        + "/entries",
                 kvmEntryName);
     }
 
@@ -48,9 +78,20 @@ public class KvmApi extends KvmOperations implements Kvm {
                 kvmEntryValue);
     }
 
+    @Override
+    protected int getScopeEntryThreads(ServerProfile profile) {
+        return profile.getKvmApiEntryThreads();
+    }
+
     @Override
     public void update(KvmValueObject kvmValueObject)
             throws IOException, MojoFailureException {
         super.update(kvmValueObject);
     }
+
+    @Override
+    public void sync(KvmValueObject kvmValueObject)
+            throws IOException, MojoFailureException {
+        super.sync(kvmValueObject);
+    }
 }
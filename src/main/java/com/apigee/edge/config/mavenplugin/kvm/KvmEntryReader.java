@@ -0,0 +1,139 @@
+package com.apigee.edge.config.mavenplugin.kvm;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads KVM entries one at a time from an entry file.
+ *
+ * .ndjson/.jsonl - one {"name": "...", "value": "..."} object per line
+ * .csv           - one name,value record per line, values may be quoted
+ *                  ("a,b" or "say ""hi"""); an optional name,value header
+ *                  line is skipped
+ *
+ * Blank lines are ignored. Invalid lines fail with the line number.
+ */
+public class KvmEntryReader {
+
+    private final File file;
+    private final BufferedReader reader;
+    private final boolean csv;
+    private final JSONParser parser = new JSONParser();
+    private int line;
+
+    private KvmEntryReader(File file, boolean csv) throws IOException {
+        this.file = file;
+        this.csv = csv;
+        this.reader = new BufferedReader(new InputStreamReader(
+                                    new FileInputStream(file), "UTF-8"));
+    }
+
+    public static KvmEntryReader open(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return new KvmEntryReader(file, true);
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return new KvmEntryReader(file, false);
+        }
+        throw new IllegalArgumentException("Unsupported KVM entry file " + file
+                                    + ". Use .ndjson, .jsonl or .csv");
+    }
+
+    /**
+     * Next entry, null at the end of the file
+     */
+    public JSONObject next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.trim().length() == 0) {
+                continue;
+            }
+            JSONObject entry = csv ? parseCsv(text) : parseJson(text);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private JSONObject parseJson(String text) {
+        try {
+            Object entry = parser.parse(text);
+            if (entry instanceof JSONObject &&
+                    ((JSONObject) entry).get("name") != null) {
+                return (JSONObject) entry;
+            }
+        } catch (ParseException e) {
+            throw invalid(e.toString());
+        }
+        throw invalid("entry without a name");
+    }
+
+    private JSONObject parseCsv(String text) {
+        List<String> fields = splitCsv(text);
+        if (fields.size() != 2) {
+            throw invalid("expected name,value");
+        }
+        if (line == 1 && fields.get(0).equals("name")
+                      && fields.get(1).equals("value")) {
+            return null;
+        }
+        JSONObject entry = new JSONObject();
+        entry.put("name", fields.get(0));
+        entry.put("value", fields.get(1));
+        return entry;
+    }
+
+    private List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw invalid("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Invalid KVM entry file " + file +
+                                    " line " + line + ": " + message);
+    }
+}
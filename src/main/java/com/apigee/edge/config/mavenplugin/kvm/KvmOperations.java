@@ -1,7 +1,11 @@
 package com.apigee.edge.config.mavenplugin.kvm;
 
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.apache.maven.plugin.MojoFailureException;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -10,13 +14,48 @@ import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry level KVM operations of a scope.
+ *
+ * Remote entries are read from the entry array of the map GET. On CPS orgs
+ * the map GET carries the map definition only (name, encrypted); when it has
+ * no entry array the keys are paged and each entry is read from the entries
+ * endpoint. sync and export both read maps this way, see read().
+ */
 public abstract class KvmOperations {
 
     private static Logger logger = LoggerFactory.getLogger(KvmOperations.class);
 
-    public abstract HttpResponse getEntriesForKvm(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException;
+    /* keys listed per call on CPS orgs */
+    static final int KEYS_PAGE_SIZE = 100;
+
+    /* entries per map update when importing an entry file on non CPS orgs */
+    static final int ENTRY_CHUNK_SIZE = 500;
+
+    /* failed entry calls listed in the build log */
+    static final int MAX_REPORTED_FAILURES = 100;
+
+    public abstract HttpResponse getKvm(KvmValueObject kvmValueObject) throws IOException;
+
+    public abstract HttpResponse deleteKvmEntries(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException;
+
+    public abstract HttpResponse getKvmEntry(KvmValueObject kvmValueObject, String kvmEntryName) throws IOException;
+
+    public abstract HttpResponse getKeysForKvm(KvmValueObject kvmValueObject, Map<String, Object> params) throws IOException;
 
     public abstract HttpResponse updateKvmEntries(KvmValueObject kvmValueObject, String kvmEntryName, String kvmEntryValue) throws IOException;
 
@@ -24,11 +63,15 @@ public abstract class KvmOperations {
 
     public abstract HttpResponse createKvmEntries(KvmValueObject kvmValueObject, String kvmEntryValue) throws IOException;
 
+    protected abstract int getScopeEntryThreads(ServerProfile profile);
+
 
     public void update(KvmValueObject kvmValueObject)
             throws IOException, MojoFailureException {
 
-        if(isOrgCpsEnabled(kvmValueObject)){
+        if(kvmValueObject.getEntryFile() != null){
+            importEntries(kvmValueObject, false);
+        }else if(isOrgCpsEnabled(kvmValueObject)){
             updateKvmForCpsOrg(kvmValueObject);
         }else {
             updateKvmForNonCpsOrg(kvmValueObject);
@@ -40,36 +83,348 @@ public abstract class KvmOperations {
         return kvmValueObject.getProfile().getCpsEnabled();
     }
 
+    /**
+     * Entry level sync of an existing map: entries missing locally are
+     * deleted and local entries are written.
+     *
+     * Non CPS orgs read the values with the map GET, one call, and write
+     * the new or changed entries with a single map update.
+     *
+     * CPS orgs only page the remote keys by default, so the reads follow
+     * the number of keys / KEYS_PAGE_SIZE, and every local entry is written.
+     * With apigee.kvm.syncReadValues=true each remote value is read first
+     * (one GET per entry on the entry pool, see getRemoteValues) and only
+     * new or changed entries are written: cheaper writes for the price of
+     * reads that follow the size of the map, not of the change.
+     */
+    public void sync(KvmValueObject kvmValueObject)
+            throws IOException, MojoFailureException {
+        if (kvmValueObject.getEntryFile() != null) {
+            importEntries(kvmValueObject, true);
+            return;
+        }
+        JSONArray entries = getEntriesConfig(kvmValueObject.getKvm());
+        boolean cps = isOrgCpsEnabled(kvmValueObject);
+        /* null when only the keys are compared */
+        Map<String, String> remoteValues = null;
+        Set<String> remoteKeys;
+        if (cps && !kvmValueObject.getProfile().isKvmSyncReadValues()) {
+            remoteKeys = getExistingKeys(kvmValueObject);
+        } else {
+            remoteValues = getRemoteValues(kvmValueObject);
+            remoteKeys = new HashSet<String>(remoteValues.keySet());
+        }
+
+        List<JSONObject> changed = new ArrayList<JSONObject>();
+        Set<String> stale = new HashSet<String>(remoteKeys);
+        for (Object entry : entries) {
+            JSONObject entryJson = (JSONObject) entry;
+            String entryName = (String) entryJson.get("name");
+            stale.remove(entryName);
+            String value = String.valueOf(entryJson.get("value"));
+            if (remoteValues == null || !remoteKeys.contains(entryName) ||
+                    !value.equals(remoteValues.get(entryName))) {
+                changed.add(entryJson);
+            }
+        }
+        logger.info("KVM " + kvmValueObject.getKvmName() + ": " +
+                (remoteValues == null ? "values not compared, " :
+                    (entries.size() - changed.size()) + " unchanged, ") +
+                changed.size() + " to write, " + stale.size() + " to delete");
+
+        if (cps) {
+            applyEntries(kvmValueObject, changed, stale, remoteKeys);
+        } else {
+            if (!changed.isEmpty()) {
+                updateKvmForNonCpsOrg(kvmValueObject);
+            }
+            applyEntries(kvmValueObject, new ArrayList<JSONObject>(), stale,
+                                                                remoteKeys);
+        }
+        logger.info("KVM Sync Success: " + kvmValueObject.getKvmName() + " " +
+                changed.size() + " entries written, " + stale.size() + " deleted");
+    }
+
     private void updateKvmForCpsOrg(KvmValueObject kvmValueObject) throws MojoFailureException, IOException {
         JSONArray entries = getEntriesConfig(kvmValueObject.getKvm());
-        HttpResponse response;
+        List<JSONObject> writes = new ArrayList<JSONObject>();
+        for (Object entry : entries) {
+            writes.add((JSONObject) entry);
+        }
+        applyEntries(kvmValueObject, writes, Collections.<String>emptySet(),
+                                            getExistingKeys(kvmValueObject));
+        logger.info("KVM Update Success: " + kvmValueObject.getKvmName());
+    }
 
-        for (Object entry: entries){
+    private void applyEntries(KvmValueObject kvmValueObject,
+                              List<JSONObject> writes,
+                              Collection<String> deletes,
+                              Set<String> existingKeys)
+            throws MojoFailureException, IOException {
+        EntryPool pool = new EntryPool(kvmValueObject, existingKeys);
+        for (JSONObject entryJson : writes) {
+            pool.write(entryJson);
+        }
+        for (String entryName : deletes) {
+            pool.delete(entryName);
+        }
+        pool.finish();
+    }
 
-            JSONObject entryJson = ((JSONObject) entry);
-            String entryName = (String) entryJson.get("name");
+    /**
+     * Entries of a KVM definition with "entryFile" (NDJSON or CSV), streamed
+     * from the file. CPS orgs write each entry on the entry pool, other orgs
+     * update the map with chunks of ENTRY_CHUNK_SIZE entries, one chunk at a
+     * time and in file order. Only the entries in flight are held in memory.
+     * With sync, entries in Apigee that are not in the file are deleted
+     * afterwards.
+     *
+     * The chunked import, like sync, relies on the map update of non CPS
+     * orgs merging: entries in the payload are created or replaced, other
+     * entries of the map are kept. Stale entries are deleted one by one once
+     * all chunks are written.
+     */
+    private void importEntries(KvmValueObject kvmValueObject, boolean sync)
+            throws IOException, MojoFailureException {
+        File entryFile = kvmValueObject.getEntryFile();
+        boolean cps = isOrgCpsEnabled(kvmValueObject);
+        Set<String> remoteKeys = cps ? getExistingKeys(kvmValueObject) :
+            (sync ? new HashSet<String>(getRemoteValues(kvmValueObject).keySet())
+                  : new HashSet<String>());
+        Set<String> stale = sync ? new HashSet<String>(remoteKeys)
+                                 : new HashSet<String>();
+        JSONObject map = getMapConfig(kvmValueObject.getKvm());
+
+        logger.info("Importing KVM " + kvmValueObject.getKvmName() +
+                                        " entries from " + entryFile);
+        EntryPool pool = new EntryPool(kvmValueObject, remoteKeys);
+        KvmEntryReader reader = KvmEntryReader.open(entryFile);
+        int count = 0;
+        boolean imported = false;
+        try {
+            JSONArray chunk = new JSONArray();
+            JSONObject entryJson;
+            while ((entryJson = reader.next()) != null) {
+                count++;
+                stale.remove(entryJson.get("name"));
+                if (cps) {
+                    pool.write(entryJson);
+                    continue;
+                }
+                chunk.add(entryJson);
+                if (chunk.size() == ENTRY_CHUNK_SIZE) {
+                    updateChunk(kvmValueObject, map, chunk, count);
+                    chunk = new JSONArray();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                updateChunk(kvmValueObject, map, chunk, count);
+            }
+            for (String entryName : stale) {
+                pool.delete(entryName);
+            }
+            imported = true;
+        } finally {
+            if (imported) {
+                try {
+                    reader.close();
+                } finally {
+                    pool.finish();
+                }
+            } else {
+                /* keep the import failure, only log what fails after it */
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    logger.debug("Closing " + entryFile + " failed " + e.getMessage());
+                }
+                try {
+                    pool.finish();
+                } catch (Exception e) {
+                    logger.error("KVM " + kvmValueObject.getKvmName() + ": " +
+                                                                e.getMessage());
+                }
+            }
+        }
+        logger.info("KVM Import Success: " + kvmValueObject.getKvmName() +
+                " " + count + " entries, " + stale.size() + " deleted");
+    }
+
+    /**
+     * Map update with one chunk of entries on the calling thread, so chunks
+     * of the same map never overlap on the server
+     */
+    private void updateChunk(KvmValueObject kvmValueObject, JSONObject map,
+                             JSONArray chunk, int count) throws IOException {
+        JSONObject payload = new JSONObject();
+        payload.putAll(map);
+        payload.put("entry", chunk);
+        try {
+            updateKvmForNonCpsOrg(new KvmValueObject(
+                    kvmValueObject.getProfile(), kvmValueObject.getApi(),
+                    kvmValueObject.getKvmName(), payload.toJSONString()));
+        } catch (IOException e) {
+            throw new IOException("KVM " + kvmValueObject.getKvmName() +
+                    " entries up to " + count + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Entry writes and deletes of one map on a bounded pool
+     * (apigee.kvm.entryThreads). Submit blocks while all threads are busy,
+     * so only the running calls are held in memory. A failed entry does not
+     * stop the others; failures are reported by finish().
+     */
+    private class EntryPool {
+
+        private final KvmValueObject kvmValueObject;
+        private final Set<String> keys;
+        private final WorkerPool pool;
+        private final List<String> failures =
+                Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger failed = new AtomicInteger();
+        private int submitted;
+
+        EntryPool(KvmValueObject kvmValueObject, Set<String> existingKeys) {
+            this.kvmValueObject = kvmValueObject;
+            this.keys = Collections.synchronizedSet(existingKeys);
+            ServerProfile profile = kvmValueObject.getProfile();
+            this.pool = new WorkerPool(getEntryThreads(profile),
+                            profile.getConfigThreadType(), "kvm-entries");
+        }
+
+        void write(final JSONObject entryJson) throws MojoFailureException {
+            submit((String) entryJson.get("name"), new Callable<Void>() {
+                public Void call() throws IOException {
+                    writeEntry(kvmValueObject, entryJson, keys);
+                    return null;
+                }
+            });
+        }
 
+        void delete(final String entryName) throws MojoFailureException {
+            submit(entryName, new Callable<Void>() {
+                public Void call() throws IOException {
+                    deleteEntry(kvmValueObject, entryName);
+                    return null;
+                }
+            });
+        }
 
-            if(doesEntryAlreadyExistForOrg(kvmValueObject, entryName)){
-                response = updateKvmEntries(kvmValueObject, entryName, entryJson.toJSONString());
-            }else{
-                response = createKvmEntries(kvmValueObject, entryJson.toJSONString());
+        private void submit(final String name, final Callable<Void> call)
+                throws MojoFailureException {
+            submitted++;
+            try {
+                pool.submit(new Callable<Void>() {
+                    public Void call() {
+                        try {
+                            call.call();
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            if (failures.size() < MAX_REPORTED_FAILURES) {
+                                failures.add(name + ": " + e.getMessage());
+                            }
+                        }
+                        return null;
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoFailureException("Interrupted while updating KVM " +
+                                                kvmValueObject.getKvmName());
             }
+        }
 
+        void finish() throws MojoFailureException, IOException {
             try {
+                pool.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoFailureException("Interrupted while updating KVM " +
+                                                kvmValueObject.getKvmName());
+            }
+            if (failed.get() > 0) {
+                logger.error("KVM " + kvmValueObject.getKvmName() + ": " +
+                        failed.get() + " of " + submitted +
+                        " entry calls failed " + failures);
+                throw new IOException(failed.get() + " of " + submitted +
+                        " entry calls of KVM " + kvmValueObject.getKvmName() +
+                        " failed");
+            }
+        }
+    }
 
-                logger.info("Response " + response.getContentType() + "\n" +
-                        response.parseAsString());
+    private void writeEntry(KvmValueObject kvmValueObject, JSONObject entryJson,
+                            Set<String> existingKeys) throws IOException {
+        String entryName = (String) entryJson.get("name");
+        HttpResponse response;
+        if(existingKeys.contains(entryName)){
+            response = updateKvmEntries(kvmValueObject, entryName, entryJson.toJSONString());
+        }else{
+            response = createKvmEntries(kvmValueObject, entryJson.toJSONString());
+            existingKeys.add(entryName);
+        }
 
-                if (response.isSuccessStatusCode())
-                    logger.info("KVM Entry Update Success: " + entryName);
+        try {
 
-            } catch (HttpResponseException e) {
-                logger.error("KVM update error " + e.getMessage());
-                throw new IOException(e.getMessage());
-            }
+            logger.info("Response " + response.getContentType() + "\n" +
+                    response.parseAsString());
+
+            if (response.isSuccessStatusCode())
+                logger.info("KVM Entry Update Success: " + entryName);
+
+        } catch (HttpResponseException e) {
+            logger.error("KVM update error " + e.getMessage());
+            throw new IOException(e.getMessage());
         }
-        logger.info("KVM Update Success: " + kvmValueObject.getKvmName());
+    }
+
+    private void deleteEntry(KvmValueObject kvmValueObject, String entryName)
+            throws IOException {
+        HttpResponse response = deleteKvmEntries(kvmValueObject, entryName);
+        try {
+
+            logger.info("Response " + response.getContentType() + "\n" +
+                    response.parseAsString());
+
+            if (response.isSuccessStatusCode())
+                logger.info("KVM Entry Delete Success: " + entryName);
+
+        } catch (HttpResponseException e) {
+            logger.error("KVM entry delete error " + e.getMessage());
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Entry values of the map in Apigee by name, read like export(). Encrypted maps
+     * return masked values, which never match and are always written.
+     * Empty when the map does not exist.
+     */
+    private Map<String, String> getRemoteValues(KvmValueObject kvmValueObject)
+            throws IOException, MojoFailureException {
+        final Map<String, String> values =
+                Collections.synchronizedMap(new HashMap<String, String>());
+        read(kvmValueObject, new EntrySink() {
+            public void begin(String kvmName, boolean encrypted) {
+            }
+
+            public void entry(String name, String value) {
+                values.put(name, String.valueOf(value));
+            }
+
+            public void end() {
+            }
+        });
+        return new HashMap<String, String>(values);
+    }
+
+    /**
+     * Entry write threads of the scope, apigee.kvm.entryThreads when not set
+     */
+    private int getEntryThreads(ServerProfile profile) {
+        int threads = getScopeEntryThreads(profile);
+        return (threads > 0) ? threads : profile.getKvmEntryThreads();
     }
 
     private void updateKvmForNonCpsOrg(KvmValueObject kvmValueObject)
@@ -89,6 +444,21 @@ public abstract class KvmOperations {
         }
     }
 
+    /**
+     * Map definition without entries and entryFile
+     */
+    private static JSONObject getMapConfig(String kvm) throws MojoFailureException {
+        try {
+            JSONObject map = (JSONObject) new JSONParser().parse(kvm);
+            map.remove("entry");
+            map.remove("entryFile");
+            return map;
+        } catch(ParseException ex) {
+            throw new MojoFailureException("Error parsing " +
+                    ex.getMessage());
+        }
+    }
+
     private static JSONArray getEntriesConfig(String kvm) throws MojoFailureException {
         JSONParser parser = new JSONParser();
         JSONObject entry;
@@ -102,26 +472,219 @@ public abstract class KvmOperations {
         }
     }
 
-    private boolean doesEntryAlreadyExistForOrg(KvmValueObject kvmValueObject, String kvmEntryName)  {
+    /**
+     * Keys of the map in Apigee, listed once page by page. startkey is
+     * inclusive so every page after the first repeats the last key.
+     */
+    Set<String> getExistingKeys(KvmValueObject kvmValueObject)
+            throws IOException {
+        Set<String> keys = new HashSet<String>();
+        String startKey = null;
+        JSONArray page;
+        while ((page = getKeyPage(kvmValueObject, startKey)) != null) {
+            int added = 0;
+            for (Object key : page) {
+                if (keys.add((String) key)) {
+                    added++;
+                }
+            }
+            if (page.size() < KEYS_PAGE_SIZE || added == 0) {
+                break;
+            }
+            startKey = (String) page.get(page.size() - 1);
+        }
+        logger.debug("KVM " + kvmValueObject.getKvmName() + " has " +
+                        keys.size() + " entries");
+        return keys;
+    }
+
+    /**
+     * Up to KEYS_PAGE_SIZE keys from startKey (inclusive, null for the
+     * first page). Null when the map does not exist.
+     */
+    private JSONArray getKeyPage(KvmValueObject kvmValueObject, String startKey)
+            throws IOException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("count", KEYS_PAGE_SIZE);
+        if (startKey != null) {
+            params.put("startkey", startKey);
+        }
+        HttpResponse response = getKeysForKvm(kvmValueObject, params);
+        if (response == null) {
+            return null;
+        }
         try {
+            return (JSONArray) new JSONParser().parse(response.parseAsString());
+        } catch (ParseException e) {
+            throw new IOException("Get KVM keys parse error " + e.getMessage());
+        } catch (HttpResponseException e) {
+            logger.error("Get KVM keys error " + e.getMessage());
+            throw new IOException(e.getMessage());
+        }
+    }
 
-            HttpResponse response = getEntriesForKvm(kvmValueObject, kvmEntryName);
+    /**
+     * Receives a map exported by export(). entry() may be called from
+     * several threads.
+     */
+    public interface EntrySink {
 
-            if (response == null) {
-                return false;
-            }
+        void begin(String kvmName, boolean encrypted) throws IOException;
 
-            logger.info("Response " + response.getContentType() + "\n" +
-                    response.parseAsString());
+        void entry(String name, String value) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * Streams a map from Apigee to the sink without holding its entries.
+     * The map response is read token by token; on CPS orgs without an entry
+     * array the keys are paged and each entry is read on the entry pool
+     * (apigee.kvm.entryThreads).
+     */
+    public void export(final KvmValueObject kvmValueObject, final EntrySink sink)
+            throws IOException, MojoFailureException {
+        if (!read(kvmValueObject, sink)) {
+            throw new IOException("KVM " + kvmValueObject.getKvmName() +
+                                                        " not found");
+        }
+    }
+
+    /**
+     * Reads the map into the sink, false when it does not exist
+     */
+    private boolean read(final KvmValueObject kvmValueObject, final EntrySink sink)
+            throws IOException, MojoFailureException {
+        boolean cps = isOrgCpsEnabled(kvmValueObject);
+        HttpResponse response = getKvm(kvmValueObject);
+        if (response == null) {
+            return false;
+        }
+        boolean begun = false;
+        boolean encrypted = false;
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                                        response.getContent(), "UTF-8"));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("encrypted")) {
+                    encrypted = Boolean.parseBoolean(nextString(reader));
+                } else if (field.equals("entry")) {
+                    sink.begin(kvmValueObject.getKvmName(), encrypted);
+                    begun = true;
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String name = null;
+                        String value = null;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String entryField = reader.nextName();
+                            if (entryField.equals("name")) {
+                                name = nextString(reader);
+                            } else if (entryField.equals("value")) {
+                                value = nextString(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        sink.entry(name, value);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        if (!begun) {
+            sink.begin(kvmValueObject.getKvmName(), encrypted);
+            if (cps) {
+                exportEntries(kvmValueObject, sink);
+            }
+        }
+        sink.end();
+        return true;
+    }
 
-            if (response.isSuccessStatusCode()) {
-                return true;
+    private void exportEntries(final KvmValueObject kvmValueObject,
+                               final EntrySink sink)
+            throws IOException, MojoFailureException {
+        final List<String> failures =
+                Collections.synchronizedList(new ArrayList<String>());
+        ServerProfile profile = kvmValueObject.getProfile();
+        WorkerPool pool = new WorkerPool(getEntryThreads(profile),
+                        profile.getConfigThreadType(), "kvm-export");
+        try {
+            String startKey = null;
+            JSONArray page;
+            while ((page = getKeyPage(kvmValueObject, startKey)) != null) {
+                for (Object key : page) {
+                    final String entryName = (String) key;
+                    if (entryName.equals(startKey)) {
+                        continue; // last key of the previous page
+                    }
+                    pool.submit(new Callable<Void>() {
+                        public Void call() {
+                            try {
+                                exportEntry(kvmValueObject, entryName, sink);
+                            } catch (Exception e) {
+                                failures.add(entryName + ": " + e.getMessage());
+                            }
+                            return null;
+                        }
+                    });
+                }
+                if (page.size() < KEYS_PAGE_SIZE ||
+                        page.get(page.size() - 1).equals(startKey)) {
+                    break;
+                }
+                startKey = (String) page.get(page.size() - 1);
             }
+            pool.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while exporting KVM " +
+                                            kvmValueObject.getKvmName());
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.size() + " entries of KVM " +
+                    kvmValueObject.getKvmName() + " could not be read " +
+                    failures.subList(0, Math.min(failures.size(),
+                                                MAX_REPORTED_FAILURES)));
+        }
+    }
 
-        } catch (IOException e) {
-            logger.error("Get KVM Entry error " + e.getMessage());
+    private void exportEntry(KvmValueObject kvmValueObject, String entryName,
+                             EntrySink sink) throws IOException {
+        HttpResponse response = getKvmEntry(kvmValueObject, entryName);
+        if (response == null) {
+            return; // deleted since the keys were listed
+        }
+        try {
+            JSONObject entry = (JSONObject) new JSONParser().parse(
+                                                response.parseAsString());
+            Object value = entry.get("value");
+            sink.entry(entryName, value == null ? null : value.toString());
+        } catch (ParseException e) {
+            throw new IOException("Get KVM entry parse error " + e.getMessage());
+        } catch (HttpResponseException e) {
+            throw new IOException(e.getMessage());
         }
+    }
 
-        return false;
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return reader.nextString();
     }
 }
@@ -2,12 +2,15 @@ package com.apigee.edge.config.mavenplugin.kvm;
 
 import com.apigee.edge.config.utils.ServerProfile;
 
+import java.io.File;
+
 public class KvmValueObject {
 
     private ServerProfile profile;
     private String api;
     private String kvmName;
     private String kvm;
+    private File entryFile;
 
     public KvmValueObject(ServerProfile profile, String api, String kvmName, String kvm) {
         this.profile = profile;
@@ -48,4 +51,15 @@ public class KvmValueObject {
         return kvm;
     }
 
+    /**
+     * NDJSON/CSV file with the entries, null when they are part of the kvm
+     */
+    public File getEntryFile() {
+        return entryFile;
+    }
+
+    public void setEntryFile(File entryFile) {
+        this.entryFile = entryFile;
+    }
+
 }
@@ -0,0 +1,52 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of file or response content, read in chunks so large files are
+ * never held in memory.
+ */
+public class ContentDigest {
+
+    public static String sha256(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return sha256(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static String sha256(String text) {
+        try {
+            return sha256(new ByteArrayInputStream(text.getBytes("UTF-8")));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            digest.update(buffer, 0, n);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
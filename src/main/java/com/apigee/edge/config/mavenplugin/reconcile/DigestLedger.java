@@ -0,0 +1,83 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Digests of the content last uploaded by the plugin, kept in a local
+ * properties file (apigee.resourcefile.ledger). Lets unchanged uploads be
+ * skipped without downloading the remote content. The ledger is only as
+ * accurate as the builds that use it: changes made outside the plugin are
+ * not seen.
+ */
+public class DigestLedger {
+
+    private static final Map<String, DigestLedger> ledgers =
+                                        new HashMap<String, DigestLedger>();
+
+    private final File file;
+    private final Properties digests = new Properties();
+    private boolean dirty;
+
+    private DigestLedger(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                digests.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Ledger shared by all goals of the build, null when path is not set
+     */
+    public static synchronized DigestLedger forPath(String path)
+            throws IOException {
+        if (path == null || path.length() == 0) {
+            return null;
+        }
+        File file = new File(path).getAbsoluteFile();
+        DigestLedger ledger = ledgers.get(file.getPath());
+        if (ledger == null) {
+            ledger = new DigestLedger(file);
+            ledgers.put(file.getPath(), ledger);
+        }
+        return ledger;
+    }
+
+    public synchronized String get(String key) {
+        return digests.getProperty(key);
+    }
+
+    public synchronized void put(String key, String digest) {
+        digests.setProperty(key, digest);
+        dirty = true;
+    }
+
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            digests.store(out, "Digests of uploaded content");
+        } finally {
+            out.close();
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,135 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compares a local config payload with the payload Apigee returns for the
+ * same entity.
+ *
+ * Both are canonicalized first: server managed fields are dropped, fields
+ * holding a default (null, "", false, empty list or object) are dropped,
+ * object keys and list elements are sorted and scalars are compared as
+ * strings ("300" equals 300).
+ */
+public class PayloadComparator {
+
+    /**
+     * Fields set by Apigee, never part of the local config
+     */
+    public static final Set<String> SERVER_FIELDS =
+            Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+                    "createdAt", "createdBy", "lastModifiedAt", "lastModifiedBy")));
+
+    public static boolean equal(String local, String remote) {
+        return equal(local, remote, SERVER_FIELDS);
+    }
+
+    /**
+     * @param ignored top level fields left out of the comparison
+     */
+    public static boolean equal(String local, String remote,
+                                Set<String> ignored) {
+        if (local == null || remote == null) {
+            return false;
+        }
+        String canonicalLocal = canonicalize(local, ignored);
+        return canonicalLocal != null &&
+                canonicalLocal.equals(canonicalize(remote, ignored));
+    }
+
+    /**
+     * Canonical JSON text, null when the payload is not valid JSON
+     */
+    public static String canonicalize(String json, Set<String> ignored) {
+        try {
+            Object value = new JSONParser().parse(json);
+            Object canonical = canonical(value, ignored);
+            return JSONValue.toJSONString(canonical);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * SERVER_FIELDS plus type specific read-only fields
+     */
+    public static Set<String> serverFieldsAnd(String... names) {
+        Set<String> fields = new HashSet<String>(SERVER_FIELDS);
+        fields.addAll(Arrays.asList(names));
+        return fields;
+    }
+
+    /**
+     * ignored plus the fields of optional the local payload does not set.
+     * Apigee fills those in with a default (e.g. status "approved"), which
+     * is not a difference.
+     */
+    public static Set<String> ignoreUnset(String local, Set<String> ignored,
+                                          String... optional) {
+        Set<String> fields = new HashSet<String>(ignored);
+        try {
+            Object value = new JSONParser().parse(local);
+            for (String field : optional) {
+                if (!(value instanceof Map) || !((Map) value).containsKey(field)) {
+                    fields.add(field);
+                }
+            }
+        } catch (ParseException e) {
+            /* not comparable anyway, see equal */
+        }
+        return fields;
+    }
+
+    private static Object canonical(Object value, Set<String> ignored) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<String, Object>();
+            for (Object o : ((Map) value).entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                String key = String.valueOf(entry.getKey());
+                if (ignored != null && ignored.contains(key)) {
+                    continue;
+                }
+                /* nested objects only drop the server fields */
+                Object canonical = canonical(entry.getValue(), SERVER_FIELDS);
+                if (!isDefault(canonical)) {
+                    sorted.put(key, canonical);
+                }
+            }
+            return sorted;
+        }
+        if (value instanceof Collection) {
+            List<String> elements = new ArrayList<String>();
+            for (Object element : (Collection) value) {
+                Object canonical = canonical(element, SERVER_FIELDS);
+                if (!isDefault(canonical)) {
+                    elements.add(JSONValue.toJSONString(canonical));
+                }
+            }
+            Collections.sort(elements);
+            return elements;
+        }
+        return (value == null) ? null : String.valueOf(value);
+    }
+
+    private static boolean isDefault(Object value) {
+        if (value == null) return true;
+        if (value instanceof String) {
+            return ((String) value).length() == 0 || value.equals("false");
+        }
+        if (value instanceof Map) return ((Map) value).isEmpty();
+        if (value instanceof Collection) return ((Collection) value).isEmpty();
+        return false;
+    }
+}
@@ -0,0 +1,416 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import com.apigee.edge.config.rest.ConcurrencyLimiter;
+import com.apigee.edge.config.rest.RetryPolicy;
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.edge.config.utils.WorkerPool;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Shared create/update/delete/sync loop of the config mojos.
+ *
+ * The desired entities are compared with the names that already exist in
+ * Apigee to build a list of operations. Sync updates existing entities in
+ * place, creates missing ones and, with apigee.config.prune=true, deletes
+ * the entities that exist only in Apigee. The operations run on a bounded
+ * WorkerPool (apigee.config.threads). Failures are collected per entity
+ * and reported once all operations finished.
+ */
+public class ReconcileEngine {
+
+    private static Logger logger = LoggerFactory.getLogger(ReconcileEngine.class);
+
+    private ServerProfile profile;
+
+    private ReconcilePlan plan;
+
+    /**
+     * @param plan records the operations with apigee.config.plan=true
+     */
+    public ReconcileEngine(ServerProfile profile, ReconcilePlan plan) {
+        this.profile = profile;
+        this.plan = plan;
+    }
+
+    /**
+     * Operations for the build option (create|update|delete|sync) based on
+     * whether each entity already exists.
+     */
+    public static List<ReconcileOperation> plan(String option,
+                                                List<ReconcileItem> items,
+                                                Collection existing) {
+        Set<String> existingKeys = new HashSet<String>();
+        if (existing != null) {
+            for (Object key : existing) {
+                existingKeys.add(String.valueOf(key));
+            }
+        }
+
+        List<ReconcileOperation> operations = new ArrayList<ReconcileOperation>();
+        for (ReconcileItem item : items) {
+            boolean exists = existingKeys.contains(item.getKey());
+            operations.add(new ReconcileOperation(
+                                getType(option, exists), item, exists));
+        }
+        return operations;
+    }
+
+    /**
+     * Operations for config types where existence is not checked
+     * (e.g. flow hooks are always attached to a fixed set of flow hook points)
+     */
+    public static List<ReconcileOperation> planUnconditional(String option,
+                                                List<ReconcileItem> items) {
+        List<ReconcileOperation> operations = new ArrayList<ReconcileOperation>();
+        for (ReconcileItem item : items) {
+            ReconcileOperation.Type type;
+            if ("create".equals(option)) {
+                type = ReconcileOperation.Type.CREATE;
+            } else {
+                type = getType(option, true);
+            }
+            operations.add(new ReconcileOperation(type, item, true));
+        }
+        return operations;
+    }
+
+    private static ReconcileOperation.Type getType(String option, boolean exists) {
+        if (exists) {
+            if ("update".equals(option)) return ReconcileOperation.Type.UPDATE;
+            if ("delete".equals(option)) return ReconcileOperation.Type.DELETE;
+            if ("sync".equals(option)) return ReconcileOperation.Type.UPDATE;
+        } else {
+            if ("create".equals(option) || "update".equals(option) ||
+                    "sync".equals(option)) {
+                return ReconcileOperation.Type.CREATE;
+            }
+        }
+        return ReconcileOperation.Type.SKIP;
+    }
+
+    /**
+     * Plans and runs the operations. Throws once all operations completed
+     * if any of them failed.
+     */
+    public ReconcileResult reconcile(String option,
+                                     List<ReconcileItem> items,
+                                     Collection existing,
+                                     ReconcileHandler handler)
+            throws MojoFailureException {
+        List<ReconcileOperation> operations = plan(option, items, existing);
+        if ("sync".equals(option) && profile.isConfigPrune()) {
+            operations.addAll(prune(items, existing, handler));
+        }
+        return run(operations, handler);
+    }
+
+    /**
+     * Deletes for the existing entities that are not in the local config
+     */
+    static List<ReconcileOperation> prune(List<ReconcileItem> items,
+                                          Collection existing,
+                                          ReconcileHandler handler) {
+        Set<String> localKeys = new HashSet<String>();
+        for (ReconcileItem item : items) {
+            localKeys.add(item.getKey());
+        }
+        List<ReconcileOperation> operations = new ArrayList<ReconcileOperation>();
+        if (existing == null) {
+            return operations;
+        }
+        for (Object o : existing) {
+            String key = String.valueOf(o);
+            if (localKeys.contains(key)) {
+                continue;
+            }
+            ReconcileItem item = handler.getRemoteItem(key);
+            if (item == null) {
+                logger.warn(handler.getResourceType() + " \"" + key +
+                        "\" exists only in Apigee and cannot be pruned.");
+                continue;
+            }
+            operations.add(new ReconcileOperation(
+                                ReconcileOperation.Type.DELETE, item, true));
+        }
+        return operations;
+    }
+
+    public ReconcileResult run(List<ReconcileOperation> operations,
+                               ReconcileHandler handler)
+            throws MojoFailureException {
+        String planType = handler.getResourceType() +
+                (handler.getScope() != null ? " [" + handler.getScope() + "]" : "");
+        if (profile.isConfigSkipUnchanged()) {
+            operations = classify(operations, handler);
+        }
+        if (profile.isConfigPlan()) {
+            return plan(planType, operations, handler);
+        }
+        if (profile.getConfigPlanFile() != null) {
+            operations = filter(planType, operations);
+        }
+
+        ReconcileResult result = execute(operations, handler);
+        result.report(logger);
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.forProfile(profile);
+        if (limiter != null && profile.getConfigThreads() > 1) {
+            limiter.report(logger);
+        }
+        RetryPolicy.report(logger);
+        if (result.hasFailures()) {
+            throw new MojoFailureException("Apigee network call error. " +
+                    result.getFailures().size() + " " +
+                    handler.getResourceType() + " operation(s) failed: " +
+                    result.getFailures());
+        }
+        return result;
+    }
+
+    /**
+     * Reads the entities that would be written and turns operations that
+     * would not change anything into NOOPs. Reads run on the worker pool;
+     * when a read fails the operation is kept.
+     */
+    private List<ReconcileOperation> classify(List<ReconcileOperation> operations,
+                                              final ReconcileHandler handler)
+            throws MojoFailureException {
+        WorkerPool pool = WorkerPool.forProfile(profile, "reconcile");
+        List<Future<ReconcileOperation>> futures =
+                                new ArrayList<Future<ReconcileOperation>>();
+        try {
+            for (final ReconcileOperation operation : operations) {
+                futures.add(pool.submit(new Callable<ReconcileOperation>() {
+                    public ReconcileOperation call() {
+                        return classify(operation, handler);
+                    }
+                }));
+            }
+            List<ReconcileOperation> classified =
+                        new ArrayList<ReconcileOperation>(operations.size());
+            for (Future<ReconcileOperation> future : futures) {
+                classified.add(future.get());
+            }
+            pool.shutdown();
+            return classified;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while reading " +
+                                    handler.getResourceType());
+        } catch (ExecutionException e) {
+            throw new MojoFailureException(e.getCause().getMessage());
+        }
+    }
+
+    private static ReconcileOperation classify(ReconcileOperation operation,
+                                               ReconcileHandler handler) {
+        ReconcileItem item = operation.getItem();
+        try {
+            switch (operation.getType()) {
+                case CREATE:
+                    if (!operation.exists()) break;
+                    /* unconditional create (flow hook attach) */
+                case UPDATE:
+                    String remote = handler.getRemote(item);
+                    if (remote != null && handler.isUnchanged(item, remote)) {
+                        return operation.withType(ReconcileOperation.Type.NOOP);
+                    }
+                    break;
+                case DELETE:
+                    if (handler.isDeleted(item)) {
+                        return operation.withType(ReconcileOperation.Type.NOOP);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            logger.debug(handler.getResourceType() + " \"" + item.getName() +
+                        "\" could not be compared " + e.getMessage());
+        }
+        return operation;
+    }
+
+    /**
+     * apigee.config.plan=true: logs and records the operations without
+     * calling Apigee, and writes apigee.config.planFile when set
+     */
+    private ReconcileResult plan(String planType,
+                                 List<ReconcileOperation> operations,
+                                 ReconcileHandler handler)
+            throws MojoFailureException {
+        plan.add(profile.getOrg(), profile.getEnvironment(), planType,
+                 operations, logger);
+        plan.report(logger);
+        if (profile.getConfigPlanFile() != null) {
+            try {
+                plan.write(new File(profile.getConfigPlanFile()));
+            } catch (IOException e) {
+                throw new MojoFailureException("Unable to write plan file "
+                        + profile.getConfigPlanFile() + " " + e.getMessage());
+            }
+        }
+        return new ReconcileResult(handler.getResourceType());
+    }
+
+    /**
+     * Applying a plan file: operations not in the plan are skipped
+     */
+    private List<ReconcileOperation> filter(String planType,
+                                            List<ReconcileOperation> operations)
+            throws MojoFailureException {
+        File planFile = new File(profile.getConfigPlanFile());
+        if (!planFile.exists()) {
+            throw new MojoFailureException("Plan file " + planFile +
+                    " not found. Run with -Dapigee.config.plan=true first.");
+        }
+        Set<String> planned;
+        try {
+            planned = ReconcilePlan.read(planFile);
+        } catch (IOException e) {
+            throw new MojoFailureException(e.getMessage());
+        }
+        List<ReconcileOperation> filtered = new ArrayList<ReconcileOperation>();
+        for (ReconcileOperation operation : operations) {
+            if (operation.getType() == ReconcileOperation.Type.SKIP ||
+                    planned.contains(ReconcilePlan.key(profile.getOrg(),
+                            profile.getEnvironment(), planType,
+                            operation.getItem().getKey(),
+                            operation.getType().name()))) {
+                filtered.add(operation);
+            } else {
+                logger.info(planType + " \"" + operation.getItem().getName() +
+                        "\" " + operation.getType().name().toLowerCase() +
+                        " not in plan. Skipping.");
+                filtered.add(new ReconcileOperation(ReconcileOperation.Type.SKIP,
+                        operation.getItem(), operation.exists()));
+            }
+        }
+        return filtered;
+    }
+
+    public ReconcileResult execute(List<ReconcileOperation> operations,
+                                   final ReconcileHandler handler)
+            throws MojoFailureException {
+        final ReconcileResult result =
+                            new ReconcileResult(handler.getResourceType());
+        WorkerPool pool = WorkerPool.forProfile(profile, "reconcile");
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (final ReconcileOperation operation : operations) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    public Void call() {
+                        apply(handler, operation, result);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while running " +
+                                    handler.getResourceType() + " operations");
+        } catch (ExecutionException e) {
+            throw new MojoFailureException(e.getCause().getMessage());
+        }
+        return result;
+    }
+
+    private void apply(ReconcileHandler handler,
+                              ReconcileOperation operation,
+                              ReconcileResult result) {
+        String type = handler.getResourceType();
+        ReconcileItem item = operation.getItem();
+        try {
+            switch (operation.getType()) {
+                case CREATE:
+                    logger.info("Creating " + type + " - " + item.getName());
+                    create(handler, item);
+                    break;
+                case UPDATE:
+                    logger.info(type + " \"" + item.getName() +
+                                            "\" exists. Updating.");
+                    handler.update(item);
+                    break;
+                case DELETE:
+                    if (item.getPayload() == null) {
+                        logger.info(type + " \"" + item.getName() +
+                                    "\" not in local config. Deleting.");
+                    } else {
+                        logger.info(type + " \"" + item.getName() +
+                                    "\" already exists. Deleting.");
+                    }
+                    handler.delete(item);
+                    break;
+                case NOOP:
+                    logger.info(type + " \"" + item.getName() +
+                                            "\" unchanged. Skipping.");
+                    break;
+                case SKIP:
+                    if (operation.exists()) {
+                        logger.info(type + " \"" + item.getName() +
+                                            "\" already exists. Skipping.");
+                    } else {
+                        logger.info(type + " \"" + item.getName() +
+                                            "\" does not exist. Skipping.");
+                    }
+                    break;
+            }
+            result.completed(operation);
+        } catch (Exception e) {
+            logger.error(type + " \"" + item.getName() + "\" " +
+                    operation.getType().name().toLowerCase() +
+                    " error " + e.getMessage());
+            result.failed(operation, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates are POSTs and are not retried by RestUtil. After a transient
+     * failure the entity is looked up again; the create is repeated only
+     * when it is confirmed missing.
+     */
+    private void create(ReconcileHandler handler, ReconcileItem item)
+            throws IOException, MojoFailureException {
+        RetryPolicy policy = RetryPolicy.forProfile(profile);
+        String call = "POST " + handler.getResourceType();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.create(item);
+                return;
+            } catch (IOException e) {
+                if (attempt >= policy.getMaxAttempts()
+                        || !RetryPolicy.isTransient(e)) {
+                    throw e;
+                }
+                Boolean exists = handler.exists(item);
+                if (exists == null) {
+                    throw e;
+                }
+                if (exists) {
+                    logger.info(handler.getResourceType() + " \"" +
+                            item.getName() + "\" was created despite the error.");
+                    return;
+                }
+                policy.backOff(call, attempt, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.IOException;
+
+/**
+ * REST calls used by the ReconcileEngine for one config type.
+ * Implementations are called from worker threads and must not keep
+ * per call state.
+ */
+public abstract class ReconcileHandler {
+
+    /**
+     * Config type used in log messages e.g. "Org KVM", "Cache"
+     */
+    public abstract String getResourceType();
+
+    /**
+     * Parent of the entities when the same name can exist more than once
+     * e.g. the API of an API KVM or the developer of an app
+     */
+    public String getScope() {
+        return null;
+    }
+
+    public abstract void create(ReconcileItem item)
+            throws IOException, MojoFailureException;
+
+    public abstract void update(ReconcileItem item)
+            throws IOException, MojoFailureException;
+
+    public abstract void delete(ReconcileItem item)
+            throws IOException, MojoFailureException;
+
+    /**
+     * Current payload of the entity in Apigee, null when it cannot be read.
+     * Updates are skipped when isUnchanged() matches it with the item.
+     */
+    public String getRemote(ReconcileItem item)
+            throws IOException, MojoFailureException {
+        return null;
+    }
+
+    /**
+     * Compares the canonical payloads, ignoring server managed fields
+     */
+    public boolean isUnchanged(ReconcileItem item, String remote) {
+        return PayloadComparator.equal(item.getPayload(), remote);
+    }
+
+    /**
+     * For config types that always exist and are detached on delete
+     * (flow hooks): true when there is nothing to delete.
+     */
+    public boolean isDeleted(ReconcileItem item)
+            throws IOException, MojoFailureException {
+        return false;
+    }
+
+    /**
+     * Item for an entity that exists only in Apigee, deleted by sync with
+     * apigee.config.prune=true. Null when the key alone is not enough to
+     * delete it.
+     */
+    public ReconcileItem getRemoteItem(String key) {
+        return new ReconcileItem(key, null);
+    }
+
+    /**
+     * Re-reads whether the entity exists in Apigee. Creates (POST) that failed
+     * with a transient error are only retried when this confirms the entity
+     * was not created. Returns null when the config type cannot be checked.
+     */
+    public Boolean exists(ReconcileItem item)
+            throws IOException, MojoFailureException {
+        return null;
+    }
+
+}
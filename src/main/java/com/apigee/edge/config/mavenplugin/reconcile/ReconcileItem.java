@@ -0,0 +1,38 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+/**
+ * A config entity from edge.json or the config dir.
+ *
+ * key     - identity matched against the existing remote entities
+ * name    - name used in log messages
+ * payload - management API payload
+ */
+public class ReconcileItem {
+
+    private String key;
+    private String name;
+    private String payload;
+
+    public ReconcileItem(String name, String payload) {
+        this(name, name, payload);
+    }
+
+    public ReconcileItem(String key, String name, String payload) {
+        this.key = key;
+        this.name = name;
+        this.payload = payload;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+}
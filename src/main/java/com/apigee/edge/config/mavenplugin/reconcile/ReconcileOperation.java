@@ -0,0 +1,59 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+/**
+ * Planned action for a single config entity
+ */
+public class ReconcileOperation {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE, SKIP,
+        /* exists in Apigee with the same payload */
+        NOOP
+    }
+
+    private Type type;
+    private ReconcileItem item;
+    private boolean exists;
+
+    public ReconcileOperation(Type type, ReconcileItem item, boolean exists) {
+        this.type = type;
+        this.item = item;
+        this.exists = exists;
+    }
+
+    /**
+     * Same entity with another operation type
+     */
+    public ReconcileOperation withType(Type type) {
+        return new ReconcileOperation(type, item, exists);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public ReconcileItem getItem() {
+        return item;
+    }
+
+    /**
+     * @return true if the entity exists in Apigee
+     */
+    public boolean exists() {
+        return exists;
+    }
+
+    /**
+     * Number of management API calls the operation makes
+     */
+    public int getCallCount() {
+        switch (type) {
+            case SKIP:
+            case NOOP:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Operations planned with apigee.config.plan=true, collected across all
+ * config types of the build.
+ *
+ * The plan is kept in the plugin context, so the config goals of one build
+ * add to the same plan and the next build starts with an empty one.
+ * Operations are keyed by org and env as well, a plan only applies to the
+ * org and env it was made for.
+ *
+ * The plan is printed per config type and can be written to
+ * apigee.config.planFile. A later run with the same planFile (and plan
+ * disabled) applies only the operations listed in it.
+ */
+public class ReconcilePlan {
+
+    private static final String CONTEXT_KEY = ReconcilePlan.class.getName();
+
+    private final List<JSONObject> operations = new ArrayList<JSONObject>();
+    private final Map<ReconcileOperation.Type, Integer> counts =
+            new EnumMap<ReconcileOperation.Type, Integer>(ReconcileOperation.Type.class);
+    private int calls;
+
+    /**
+     * Plan of the build owning the plugin context
+     */
+    public static ReconcilePlan forContext(Map context) {
+        if (context == null) {
+            return new ReconcilePlan();
+        }
+        synchronized (context) {
+            ReconcilePlan plan = (ReconcilePlan) context.get(CONTEXT_KEY);
+            if (plan == null) {
+                plan = new ReconcilePlan();
+                context.put(CONTEXT_KEY, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Replaces the plan of the plugin context with an empty one, used by
+     * the goals that plan several config types in one execution
+     */
+    public static ReconcilePlan start(Map context) {
+        ReconcilePlan plan = new ReconcilePlan();
+        if (context != null) {
+            synchronized (context) {
+                context.put(CONTEXT_KEY, plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Adds the operations of one config type and logs them
+     */
+    public synchronized void add(String org, String env, String resourceType,
+                                 List<ReconcileOperation> planned,
+                                 Logger logger) {
+        Map<ReconcileOperation.Type, Integer> typeCounts =
+            new EnumMap<ReconcileOperation.Type, Integer>(ReconcileOperation.Type.class);
+        int typeCalls = 0;
+        for (ReconcileOperation operation : planned) {
+            ReconcileOperation.Type type = operation.getType();
+            logger.info("Plan: " + describe(type) + " " + resourceType +
+                        " \"" + operation.getItem().getName() + "\"");
+            increment(typeCounts, type);
+            increment(counts, type);
+            typeCalls += operation.getCallCount();
+
+            JSONObject entry = new JSONObject();
+            entry.put("org", org);
+            entry.put("env", env);
+            entry.put("resourceType", resourceType);
+            entry.put("key", operation.getItem().getKey());
+            entry.put("name", operation.getItem().getName());
+            entry.put("operation", type.name());
+            operations.add(entry);
+        }
+        calls += typeCalls;
+        logger.info("Plan " + resourceType + ": " + summary(typeCounts)
+                    + ", " + typeCalls + " API call(s)");
+    }
+
+    /**
+     * Totals of all config types planned so far
+     */
+    public synchronized void report(Logger logger) {
+        logger.info("Plan total: " + summary(counts) + ", " + calls
+                    + " API call(s)");
+    }
+
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    /**
+     * Writes all planned operations as JSON
+     */
+    public synchronized void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        JSONArray array = new JSONArray();
+        array.addAll(operations);
+        JSONObject plan = new JSONObject();
+        plan.put("calls", calls);
+        plan.put("operations", array);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            plan.writeJSONString(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Keys ("org|env|resourceType|key|OPERATION") of the operations in a
+     * plan file
+     */
+    public static Set<String> read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            JSONObject plan = (JSONObject) new JSONParser().parse(reader);
+            Set<String> keys = new HashSet<String>();
+            for (Object o : (JSONArray) plan.get("operations")) {
+                JSONObject entry = (JSONObject) o;
+                keys.add(key((String) entry.get("org"),
+                             (String) entry.get("env"),
+                             (String) entry.get("resourceType"),
+                             (String) entry.get("key"),
+                             (String) entry.get("operation")));
+            }
+            return keys;
+        } catch (ParseException e) {
+            throw new IOException("Invalid plan file " + file + " " + e.getMessage());
+        } catch (ClassCastException e) {
+            throw new IOException("Invalid plan file " + file);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static String key(String org, String env, String resourceType,
+                             String key, String operation) {
+        return org + "|" + env + "|" + resourceType + "|" + key + "|" + operation;
+    }
+
+    private static String describe(ReconcileOperation.Type type) {
+        switch (type) {
+            case CREATE:   return "create";
+            case UPDATE:   return "update";
+            case DELETE:   return "delete";
+            case NOOP:     return "no-op";
+            default:       return "skip";
+        }
+    }
+
+    private static String summary(Map<ReconcileOperation.Type, Integer> counts) {
+        StringBuilder sb = new StringBuilder();
+        for (ReconcileOperation.Type type : ReconcileOperation.Type.values()) {
+            Integer count = counts.get(type);
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(count == null ? 0 : count).append(" ").append(describe(type));
+        }
+        return sb.toString();
+    }
+
+    private static void increment(Map<ReconcileOperation.Type, Integer> counts,
+                                  ReconcileOperation.Type type) {
+        Integer count = counts.get(type);
+        counts.put(type, count == null ? 1 : count + 1);
+    }
+}
@@ -0,0 +1,67 @@
+package com.apigee.edge.config.mavenplugin.reconcile;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a reconcile run. Failures are collected per entity so one
+ * failed call does not stop the remaining operations.
+ */
+public class ReconcileResult {
+
+    private final String resourceType;
+    private final Map<ReconcileOperation.Type, Integer> completed =
+            new EnumMap<ReconcileOperation.Type, Integer>(ReconcileOperation.Type.class);
+    private final List<String> failures =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    public ReconcileResult(String resourceType) {
+        this.resourceType = resourceType;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    synchronized void completed(ReconcileOperation operation) {
+        Integer count = completed.get(operation.getType());
+        completed.put(operation.getType(), (count == null) ? 1 : count + 1);
+    }
+
+    void failed(ReconcileOperation operation, String message) {
+        failures.add(operation.getItem().getName() + " (" +
+                        operation.getType().name().toLowerCase() + "): " + message);
+    }
+
+    public synchronized int getCount(ReconcileOperation.Type type) {
+        Integer count = completed.get(type);
+        return (count == null) ? 0 : count;
+    }
+
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public void report(Logger logger) {
+        logger.info(resourceType + " summary: "
+                + getCount(ReconcileOperation.Type.CREATE) + " created, "
+                + getCount(ReconcileOperation.Type.UPDATE) + " updated, "
+                + getCount(ReconcileOperation.Type.DELETE) + " deleted, "
+                + getCount(ReconcileOperation.Type.NOOP) + " unchanged, "
+                + getCount(ReconcileOperation.Type.SKIP) + " skipped, "
+                + failures.size() + " failed");
+        for (String failure : failures) {
+            logger.error(resourceType + " " + failure);
+        }
+    }
+
+}
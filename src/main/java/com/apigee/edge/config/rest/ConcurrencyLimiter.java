@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+
+/**
+ * AIMD (additive increase, multiplicative decrease) limit on the number of
+ * management API calls in flight against one host.
+ *
+ * Successful calls grow the limit by roughly one per round trip as long as
+ * latency stays close to the best latency seen. A 429 or 503 halves the
+ * limit (once per round trip) and, when the response carries Retry-After,
+ * holds back all new calls until then.
+ *
+ * Limiters are shared by all goals running in the same JVM, so the limit
+ * reported after the last goal is the one the build converged on.
+ */
+public class ConcurrencyLimiter {
+
+    static Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long DEFAULT_THROTTLE_PAUSE = 1000L; // ms
+
+    private static final Map<String, ConcurrencyLimiter> limiters =
+                                new ConcurrentHashMap<String, ConcurrencyLimiter>();
+
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long pausedUntil;
+    private long lastDecrease;
+    private double baselineLatency = -1;
+
+    private long requests;
+    private long throttled;
+    private int lowestLimit;
+    private int highestLimit;
+
+    public ConcurrencyLimiter(int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, this.maxLimit / 2);
+        this.lowestLimit = (int) limit;
+        this.highestLimit = (int) limit;
+    }
+
+    /**
+     * Limiter for the management host of the profile, null when adaptive
+     * concurrency is disabled (apigee.http.adaptiveConcurrency=false).
+     */
+    public static ConcurrencyLimiter forProfile(ServerProfile profile) {
+        if (profile == null || !profile.isHttpAdaptiveConcurrency()) {
+            return null;
+        }
+        int max = profile.getHttpMaxConcurrency() > 0 ?
+                        profile.getHttpMaxConcurrency() : profile.getConfigThreads();
+        String key = profile.getHostUrl() + ":" + max;
+        ConcurrencyLimiter limiter = limiters.get(key);
+        if (limiter != null) {
+            return limiter;
+        }
+        synchronized (limiters) {
+            limiter = limiters.get(key);
+            if (limiter == null) {
+                limiter = new ConcurrencyLimiter(max);
+                limiters.put(key, limiter);
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Blocks until a call may start.
+     * @return start time of the call, to be passed to release
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (now < pausedUntil) {
+                wait(pausedUntil - now);
+            } else if (inFlight >= (int) limit) {
+                wait();
+            } else {
+                break;
+            }
+        }
+        inFlight++;
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Records the outcome of a call started at "start".
+     * @param statusCode HTTP status, 0 when no response was received
+     * @param retryAfter Retry-After header value, may be null
+     */
+    public synchronized void release(long start, int statusCode,
+                                     String retryAfter) {
+        long now = System.currentTimeMillis();
+        long latency = now - start;
+        inFlight--;
+        requests++;
+
+        if (statusCode == 429 || statusCode == 503) {
+            throttled++;
+            /* only the first throttled response of a round trip counts */
+            if (start >= lastDecrease) {
+                limit = Math.max(1, limit * DECREASE_FACTOR);
+                lastDecrease = now;
+                logger.info("Management API throttled (" + statusCode
+                            + "). Concurrency limit lowered to " + (int) limit);
+            }
+            long pause = parseRetryAfter(retryAfter, now);
+            if (pause < 0 && statusCode == 429) {
+                pause = DEFAULT_THROTTLE_PAUSE;
+            }
+            if (pause > 0) {
+                pausedUntil = Math.max(pausedUntil, now + pause);
+            }
+        } else if (statusCode > 0 && statusCode < 500) {
+            if (baselineLatency < 0 || latency < baselineLatency) {
+                baselineLatency = latency;
+            } else {
+                /* let the baseline follow slower endpoints (uploads) */
+                baselineLatency = baselineLatency * 0.95 + latency * 0.05;
+            }
+            if (latency <= baselineLatency * LATENCY_TOLERANCE + 1
+                    && inFlight + 1 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        lowestLimit = Math.min(lowestLimit, (int) limit);
+        highestLimit = Math.max(highestLimit, (int) limit);
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized long getThrottled() {
+        return throttled;
+    }
+
+    public synchronized void report(Logger log) {
+        if (requests == 0) return;
+        log.info("Management API concurrency limit " + (int) limit
+                + " (range " + lowestLimit + "-" + highestLimit
+                + ", max " + maxLimit + "), " + throttled + " of "
+                + requests + " calls throttled");
+    }
+
+    /**
+     * Retry-After is either delay-seconds or an HTTP date
+     * @return milliseconds to wait, -1 when absent or invalid
+     */
+    static long parseRetryAfter(String retryAfter, long now) {
+        if (retryAfter == null || retryAfter.trim().length() == 0) {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000L);
+        } catch (NumberFormatException e) {
+            // not delay-seconds, try HTTP date
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(
+                            "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return Math.max(0, format.parse(value).getTime() - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+/**
+ * Selects the HTTP transport used for management API calls.
+ *
+ * default - HttpURLConnection based transport (JDK keep-alive cache)
+ * pooled  - Apache HttpClient with a thread safe connection pool, a per
+ *           route connection limit and idle connection eviction; waiting
+ *           for a pooled connection is bounded by the connect timeout
+ *
+ * Pooled transports are created once per distinct pool setting and shared
+ * by all goals running in the same JVM.
+ */
+public class HttpTransportFactory {
+
+    public static final String TRANSPORT_DEFAULT = "default";
+    public static final String TRANSPORT_POOLED = "pooled";
+
+    static Logger logger = LoggerFactory.getLogger(HttpTransportFactory.class);
+
+    private static final HttpTransport DEFAULT_TRANSPORT = new NetHttpTransport();
+
+    private static final Map<String, HttpTransport> pooledTransports =
+                                    new ConcurrentHashMap<String, HttpTransport>();
+
+    public static HttpTransport getTransport(ServerProfile profile) {
+        if (profile == null || profile.getHttpTransport() == null ||
+                !profile.getHttpTransport().equalsIgnoreCase(TRANSPORT_POOLED)) {
+            return DEFAULT_TRANSPORT;
+        }
+
+        String key = profile.getHttpMaxConnections() + ":"
+                    + profile.getHttpMaxConnectionsPerRoute() + ":"
+                    + profile.getHttpIdleTimeout() + ":"
+                    + profile.getHttpConnectTimeout();
+        HttpTransport transport = pooledTransports.get(key);
+        if (transport != null) {
+            return transport;
+        }
+        synchronized (pooledTransports) {
+            transport = pooledTransports.get(key);
+            if (transport == null) {
+                transport = createPooledTransport(profile);
+                pooledTransports.put(key, transport);
+            }
+        }
+        return transport;
+    }
+
+    private static HttpTransport createPooledTransport(ServerProfile profile) {
+        int maxConnections = Math.max(1, profile.getHttpMaxConnections());
+        int maxPerRoute = Math.max(1, Math.min(maxConnections,
+                                    profile.getHttpMaxConnectionsPerRoute()));
+
+        logger.info("Using pooled HTTP transport (max connections " + maxConnections
+                    + ", per route " + maxPerRoute
+                    + ", idle timeout " + profile.getHttpIdleTimeout() + "s"
+                    + ", pool wait " + profile.getHttpConnectTimeout() + "ms)");
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setSocketBufferSize(params, 8192);
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        ConnManagerParams.setMaxTotalConnections(params, maxConnections);
+        ConnManagerParams.setMaxConnectionsPerRoute(params,
+                                    new ConnPerRouteBean(maxPerRoute));
+        /* wait for a free pooled connection no longer than for a new one;
+         * requests that set their own connect timeout override this */
+        ConnManagerParams.setTimeout(params, profile.getHttpConnectTimeout());
+
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http",
+                                    PlainSocketFactory.getSocketFactory(), 80));
+        registry.register(new Scheme("https", trustingSocketFactory(), 443));
+
+        ThreadSafeClientConnManager connectionManager =
+                                new ThreadSafeClientConnManager(params, registry);
+        if (profile.getHttpIdleTimeout() > 0) {
+            new IdleConnectionEvictor(connectionManager,
+                                    profile.getHttpIdleTimeout()).start();
+        }
+
+        return new ApacheHttpTransport(
+                                new DefaultHttpClient(connectionManager, params));
+    }
+
+    /**
+     * Same trust behaviour as the default transport: certificate and host name
+     * validation are disabled through XTrustProvider.
+     */
+    private static SSLSocketFactory trustingSocketFactory() {
+        try {
+            XTrustProvider.install();
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
+                            XTrustProvider.TrustManagerFactoryImpl.getAlgorithm());
+            trustManagerFactory.init((KeyStore) null);
+
+            SSLContext sslContext = SSLContext.getInstance(SSLSocketFactory.TLS);
+            sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+
+            SSLSocketFactory socketFactory = new SSLSocketFactory(sslContext);
+            socketFactory.setHostnameVerifier(
+                                SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+            return socketFactory;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(
+                        "Unable to initialise SSL for pooled transport " + e.getMessage());
+        }
+    }
+
+    /**
+     * Periodically closes expired connections and connections that have been
+     * idle longer than the configured timeout.
+     */
+    private static class IdleConnectionEvictor extends Thread {
+
+        private final ThreadSafeClientConnManager connectionManager;
+        private final long idleTimeout;
+
+        IdleConnectionEvictor(ThreadSafeClientConnManager connectionManager,
+                              long idleTimeout) {
+            super("apigee-http-idle-evictor");
+            this.connectionManager = connectionManager;
+            this.idleTimeout = idleTimeout;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long interval = Math.max(1000L, TimeUnit.SECONDS.toMillis(idleTimeout) / 2);
+            try {
+                while (!isInterrupted()) {
+                    Thread.sleep(interval);
+                    connectionManager.closeExpiredConnections();
+                    connectionManager.closeIdleConnections(idleTimeout,
+                                                            TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                // JVM shutting down
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponse;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Names of a management API listing, read one page at a time.
+ *
+ * Accepted pages
+ * ["a", "b"]                                 - names
+ * [{"name": "a"}, ...]                       - entities, keyed by keyFields
+ * {"apiProduct": [ ... ]}                    - the first array in an object
+ *
+ * Paged listings (developers, apiproducts) are requested with
+ * count=PAGE_SIZE and continued with startKey=<last name>. The startKey
+ * entity is repeated at the start of the next page and skipped. Each page
+ * is decoded from the response stream.
+ */
+public class PagedListing {
+
+    static Logger logger = LoggerFactory.getLogger(PagedListing.class);
+
+    public static final int PAGE_SIZE = 1000;
+
+    private final ServerProfile profile;
+    private final String url;
+    private final boolean paged;
+    private final String[] keyFields;
+    private final Set<String> seen = new LinkedHashSet<String>();
+    private List<String> page = new ArrayList<String>();
+    private int position;
+    private boolean last;
+
+    /**
+     * @param keyFields fields of an entity joined with "_" into its key,
+     *                  default name (or email)
+     */
+    public PagedListing(ServerProfile profile, String url, boolean paged,
+                        String... keyFields) {
+        this.profile = profile;
+        this.url = url;
+        this.paged = paged;
+        this.keyFields = keyFields;
+    }
+
+    /**
+     * Next name, null after the last page
+     */
+    public String next() throws IOException {
+        while (position >= page.size()) {
+            if (last) {
+                return null;
+            }
+            readPage();
+        }
+        return page.get(position++);
+    }
+
+    /**
+     * All names, in listing order
+     */
+    public Set<String> readAll() throws IOException {
+        while (next() != null) {
+        }
+        return seen;
+    }
+
+    private void readPage() throws IOException {
+        GenericUrl pageUrl = new GenericUrl(url);
+        if (paged) {
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put("count", String.valueOf(PAGE_SIZE));
+            if (!seen.isEmpty()) {
+                params.put("startKey", page.get(page.size() - 1));
+            }
+            pageUrl.putAll(params);
+        }
+        HttpResponse response = RestUtil.executeAPIGet(profile, pageUrl.build());
+        List<String> names = new ArrayList<String>();
+        int size = (response == null) ? 0 : read(response, names);
+
+        page = new ArrayList<String>();
+        position = 0;
+        for (String name : names) {
+            if (seen.add(name)) {
+                page.add(name);
+            }
+        }
+        /* a short page, or one without new names, is the last one */
+        last = !paged || size < PAGE_SIZE || page.isEmpty();
+        logger.debug("Listed " + page.size() + " name(s) from " + url);
+    }
+
+    /**
+     * Decodes the names of a page, returns the number of entries
+     */
+    private int read(HttpResponse response, List<String> names) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                                        response.getContent(), "UTF-8"));
+        try {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        return readArray(reader, names);
+                    }
+                    reader.skipValue();
+                }
+                return 0;
+            }
+            return readArray(reader, names);
+        } catch (IllegalStateException e) {
+            throw new IOException("Invalid listing " + url + " " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private int readArray(JsonReader reader, List<String> names) throws IOException {
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            size++;
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                String key = readKey(reader);
+                if (key != null) names.add(key);
+            } else if (reader.peek() == JsonToken.STRING) {
+                names.add(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return size;
+    }
+
+    private String readKey(JsonReader reader) throws IOException {
+        Map<String, String> fields = new HashMap<String, String>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.STRING) {
+                fields.put(name, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (keyFields.length == 0) {
+            return fields.containsKey("name") ? fields.get("name") : fields.get("email");
+        }
+        StringBuilder key = new StringBuilder();
+        for (String field : keyFields) {
+            if (key.length() > 0) key.append("_");
+            key.append(fields.get(field));
+        }
+        return key.toString();
+    }
+}
@@ -18,7 +18,7 @@ package com.apigee.edge.config.rest;
 import java.io.File;
 import java.io.IOException;
 import java.net.URLEncoder;
-import java.nio.file.Files;
+import java.util.Map;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -27,35 +27,37 @@ import org.slf4j.LoggerFactory;
 
 import com.apigee.edge.config.utils.PrintUtil;
 import com.apigee.edge.config.utils.ServerProfile;
-import com.apigee.mgmtapi.sdk.client.MgmtAPIClient;
-import com.apigee.mgmtapi.sdk.model.AccessToken;
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.google.api.client.http.*;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson.JacksonFactory;
 
 public class RestUtil {
 
-    static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
     static final JsonFactory JSON_FACTORY = new JacksonFactory();
     static String versionRevision;
     static Logger logger = LoggerFactory.getLogger(RestUtil.class);
-    static String accessToken = null;
-    
-    static HttpRequestFactory REQUEST_FACTORY = HTTP_TRANSPORT
-            .createRequestFactory(new HttpRequestInitializer() {
-                // @Override
-                public void initialize(HttpRequest request) {
-                    request.setParser(JSON_FACTORY.createJsonObjectParser());
-                    XTrustProvider.install();
-                    FakeHostnameVerifier _hostnameVerifier = new FakeHostnameVerifier();
-                    // Install the all-trusting host name verifier:
-                    HttpsURLConnection.setDefaultHostnameVerifier(_hostnameVerifier);
+    static final int MAX_THROTTLED_ATTEMPTS = 5;
 
-                }
-            });
+    /**
+     * Request factory backed by the transport selected in the profile
+     * (apigee.http.transport). Connect and read timeouts are applied here
+     * for every request.
+     */
+    static HttpRequestFactory getRequestFactory(final ServerProfile profile) {
+        return HttpTransportFactory.getTransport(profile)
+                .createRequestFactory(new HttpRequestInitializer() {
+                    // @Override
+                    public void initialize(HttpRequest request) {
+                        request.setParser(JSON_FACTORY.createJsonObjectParser());
+                        XTrustProvider.install();
+                        FakeHostnameVerifier _hostnameVerifier = new FakeHostnameVerifier();
+                        // Install the all-trusting host name verifier:
+                        HttpsURLConnection.setDefaultHostnameVerifier(_hostnameVerifier);
+                        request.setConnectTimeout(profile.getHttpConnectTimeout());
+                        request.setReadTimeout(profile.getHttpReadTimeout());
+                    }
+                });
+    }
 
     /***************************************************************************
      * Env Config - get, create, update
@@ -73,9 +75,8 @@ public class RestUtil {
                             + profile.getOrg() + "/environments/"
                             + profile.getEnvironment() + "/" + resource;
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -110,15 +111,13 @@ public class RestUtil {
 
     public static HttpResponse createEnvConfigUpload(ServerProfile profile, String resource, String filePath)
 			throws IOException {
-		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+		FileContent content = getFileContent(filePath);
 
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 							+ "/environments/" + profile.getEnvironment()
 							+ "/" + resource;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(new GenericUrl(importCmd), content);
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(new GenericUrl(importCmd), content);
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -149,9 +148,8 @@ public class RestUtil {
                             + profile.getEnvironment() + "/" + resource + "/"
                             + URLEncoder.encode(resourceId, "UTF-8");
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -188,16 +186,13 @@ public class RestUtil {
 
 	public static HttpResponse updateEnvConfigUpload(ServerProfile profile, String resource, String resourceId,
 			String filePath) throws IOException {
-
-		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+		FileContent content = getFileContent(filePath);
 
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 							+ "/environments/"+ profile.getEnvironment()
 							+ "/" + resource + "/" + resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(new GenericUrl(importCmd), content);
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(new GenericUrl(importCmd), content);
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -220,8 +215,7 @@ public class RestUtil {
 							+ "/environments/" + profile.getEnvironment()
 							+ "/" + resource + "/" + resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildDeleteRequest(new GenericUrl(importCmd));
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildDeleteRequest(new GenericUrl(importCmd));
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -259,12 +253,11 @@ public class RestUtil {
         if(payload!=null && !payload.equalsIgnoreCase("")){
         	ByteArrayContent content = new ByteArrayContent("application/json", 
                     payload.getBytes());
-        	restRequest = REQUEST_FACTORY.buildRequest(HttpMethod.DELETE, new GenericUrl(importCmd), content);
+        	restRequest = getRequestFactory(profile).buildRequest(HttpMethod.DELETE, new GenericUrl(importCmd), content);
         }else{
-        	restRequest = REQUEST_FACTORY.buildDeleteRequest(
+        	restRequest = getRequestFactory(profile).buildDeleteRequest(
                     new GenericUrl(importCmd));
         }
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -284,12 +277,11 @@ public class RestUtil {
                                                 String resource) 
             throws IOException {
 
-        HttpRequest restRequest = REQUEST_FACTORY
+        HttpRequest restRequest = getRequestFactory(profile)
                 .buildGetRequest(new GenericUrl(profile.getHostUrl() + "/"
                         + profile.getApi_version() + "/organizations/"
                         + profile.getOrg() + "/environments/"
                         + profile.getEnvironment() + "/" + resource));
-        restRequest.setReadTimeout(0);
         
         //logger.debug(PrintUtil.formatRequest(restRequest));
 
@@ -306,6 +298,41 @@ public class RestUtil {
         return response;
     }
 
+    public static HttpResponse getEnvConfig(ServerProfile profile,
+                                            String resource,
+                                            String resourceId)
+            throws IOException {
+
+        String importCmd = profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/environments/"
+                + profile.getEnvironment()  + "/" + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8");
+
+        return executeAPIGet(profile, importCmd);
+    }
+
+    /**
+     * Get of a sub resource listing with query parameters e.g. paging
+     */
+    public static HttpResponse getEnvConfig(ServerProfile profile,
+                                            String resource,
+                                            String resourceId,
+                                            String subResource,
+                                            Map<String, Object> params)
+            throws IOException {
+
+        GenericUrl url = new GenericUrl(profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/environments/"
+                + profile.getEnvironment() + "/" + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8")
+                + "/" + subResource);
+        url.putAll(params);
+
+        return executeAPIGet(profile, url.build());
+    }
+
     public static HttpResponse getEnvConfig(ServerProfile profile,
                                             String resource,
                                             String resourceId,
@@ -339,9 +366,8 @@ public class RestUtil {
                             + profile.getApi_version() + "/organizations/"
                             + profile.getOrg() + "/" + resource;
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
         
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -375,14 +401,12 @@ public class RestUtil {
     
 	public static HttpResponse createOrgConfigUpload(ServerProfile profile, String resource, String filePath)
 			throws IOException {
-		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+		FileContent content = getFileContent(filePath);
 
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 				+ "/" + resource;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(new GenericUrl(importCmd), content);
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(new GenericUrl(importCmd), content);
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -412,9 +436,8 @@ public class RestUtil {
                                 + profile.getOrg() + "/" + resource + "/"
                                 + URLEncoder.encode(resourceId, "UTF-8");
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
         
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -452,15 +475,12 @@ public class RestUtil {
 													String resource,
 													String resourceId,
 													String filePath) throws IOException {
-
-		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+		FileContent content = getFileContent(filePath);
 		
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 		+ "/" + resource+"/"+resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(new GenericUrl(importCmd), content);
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(new GenericUrl(importCmd), content);
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -486,9 +506,8 @@ public class RestUtil {
                                 + profile.getOrg() + "/" + resource + "/"
                                 + URLEncoder.encode(resourceId, "UTF-8");
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildDeleteRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildDeleteRequest(
                                                     new GenericUrl(importCmd));
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -510,8 +529,7 @@ public class RestUtil {
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 				+ "/" + resource + "/" + resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildDeleteRequest(new GenericUrl(importCmd));
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildDeleteRequest(new GenericUrl(importCmd));
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -531,11 +549,10 @@ public class RestUtil {
                                                 String resource) 
             throws IOException {
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildGetRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildGetRequest(
                 new GenericUrl(profile.getHostUrl() + "/"
                         + profile.getApi_version() + "/organizations/"
                         + profile.getOrg() + "/" + resource));
-        restRequest.setReadTimeout(0);
 
         //logger.debug(PrintUtil.formatRequest(restRequest));
 
@@ -552,6 +569,92 @@ public class RestUtil {
         return response;
     }
 
+    /**
+     * Names of an org listing e.g. developers, apiproducts (paged)
+     */
+    public static PagedListing listOrgConfig(ServerProfile profile,
+                                             String resource,
+                                             boolean paged,
+                                             String... keyFields) {
+        return new PagedListing(profile, profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/" + resource, paged, keyFields);
+    }
+
+    /**
+     * Names of an environment listing e.g. caches, targetservers
+     */
+    public static PagedListing listEnvConfig(ServerProfile profile,
+                                             String resource,
+                                             String... keyFields) {
+        return new PagedListing(profile, profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/environments/"
+                + profile.getEnvironment() + "/" + resource, false, keyFields);
+    }
+
+    /**
+     * Names of an API listing e.g. keyvaluemaps, maskconfigs
+     */
+    public static PagedListing listAPIConfig(ServerProfile profile,
+                                             String api,
+                                             String resource,
+                                             String... keyFields) {
+        return new PagedListing(profile, profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/apis/" + api + "/" + resource,
+                false, keyFields);
+    }
+
+    /**
+     * Get of an org listing with query parameters e.g. expand, paging
+     */
+    public static HttpResponse getOrgConfig(ServerProfile profile,
+                                            String resource,
+                                            Map<String, Object> params)
+            throws IOException {
+
+        GenericUrl url = new GenericUrl(profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/" + resource);
+        url.putAll(params);
+
+        return executeAPIGet(profile, url.build());
+    }
+
+    public static HttpResponse getOrgConfig(ServerProfile profile,
+                                            String resource,
+                                            String resourceId)
+            throws IOException {
+
+        String importCmd = profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/" + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8");
+
+        return executeAPIGet(profile, importCmd);
+    }
+
+    /**
+     * Get of a sub resource listing with query parameters e.g. paging
+     */
+    public static HttpResponse getOrgConfig(ServerProfile profile,
+                                            String resource,
+                                            String resourceId,
+                                            String subResource,
+                                            Map<String, Object> params)
+            throws IOException {
+
+        GenericUrl url = new GenericUrl(profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/" + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8")
+                + "/" + subResource);
+        url.putAll(params);
+
+        return executeAPIGet(profile, url.build());
+    }
+
     public static HttpResponse getOrgConfig(ServerProfile profile,
                                             String resource,
                                             String resourceId,
@@ -586,9 +689,8 @@ public class RestUtil {
                             + profile.getOrg() + "/apis/"
                             + api + "/" + resource;
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -624,15 +726,13 @@ public class RestUtil {
         
         public static HttpResponse createAPIConfigUpload(ServerProfile profile, String api, String resource, String filePath)
     			throws IOException {
-    		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-    		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+    		FileContent content = getFileContent(filePath);
 
     		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
     							+ "/apis/" + api
     							+ "/" + resource;
 
-    		HttpRequest restRequest = REQUEST_FACTORY.buildPostRequest(new GenericUrl(importCmd), content);
-    		restRequest.setReadTimeout(0);
+    		HttpRequest restRequest = getRequestFactory(profile).buildPostRequest(new GenericUrl(importCmd), content);
 
     		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -664,9 +764,8 @@ public class RestUtil {
                             + api + "/" + resource + "/"
                             + URLEncoder.encode(resourceId, "UTF-8");
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(
                 new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -704,16 +803,13 @@ public class RestUtil {
     
     public static HttpResponse updateAPIConfigUpload(ServerProfile profile, String api, String resource, String resourceId,
 			String filePath) throws IOException {
-
-		byte[] file = Files.readAllBytes(new File(filePath).toPath());
-		ByteArrayContent content = new ByteArrayContent("application/octet-stream", file);
+		FileContent content = getFileContent(filePath);
 
 		String importCmd = profile.getHostUrl() + "/" + profile.getApi_version() + "/organizations/" + profile.getOrg()
 							+ "/apis/"+ api
 							+ "/" + resource + "/" + resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildPutRequest(new GenericUrl(importCmd), content);
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildPutRequest(new GenericUrl(importCmd), content);
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -742,9 +838,8 @@ public class RestUtil {
                             + api + "/" + resource + "/"
                             + URLEncoder.encode(resourceId, "UTF-8");
 
-        HttpRequest restRequest = REQUEST_FACTORY.buildDeleteRequest(
+        HttpRequest restRequest = getRequestFactory(profile).buildDeleteRequest(
                 new GenericUrl(importCmd));
-        restRequest.setReadTimeout(0);
 
         //logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -765,12 +860,11 @@ public class RestUtil {
                                                 String resource) 
             throws IOException {
 
-        HttpRequest restRequest = REQUEST_FACTORY
+        HttpRequest restRequest = getRequestFactory(profile)
                 .buildGetRequest(new GenericUrl(profile.getHostUrl() + "/"
                         + profile.getApi_version() + "/organizations/"
                         + profile.getOrg() + "/apis/"
                         + api + "/" + resource));
-        restRequest.setReadTimeout(0);
         
         //logger.debug(PrintUtil.formatRequest(restRequest));
 
@@ -787,6 +881,55 @@ public class RestUtil {
         return response;
     }
 
+    public static HttpResponse getAPIConfig(ServerProfile profile,
+                                            String api,
+                                            String resource,
+                                            String resourceId)
+            throws IOException {
+
+        String importCmd = profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/apis/" + api + "/"
+                + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8");
+
+        return executeAPIGet(profile, importCmd);
+    }
+
+    /**
+     * Response body of a get, null when the entity was not found
+     */
+    public static String getPayload(HttpResponse response) throws IOException {
+        if (response == null) return null;
+        try {
+            return response.parseAsString();
+        } catch (HttpResponseException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Get of a sub resource listing with query parameters e.g. paging
+     */
+    public static HttpResponse getAPIConfig(ServerProfile profile,
+                                            String api,
+                                            String resource,
+                                            String resourceId,
+                                            String subResource,
+                                            Map<String, Object> params)
+            throws IOException {
+
+        GenericUrl url = new GenericUrl(profile.getHostUrl() + "/"
+                + profile.getApi_version() + "/organizations/"
+                + profile.getOrg() + "/apis/" + api + "/"
+                + resource + "/"
+                + URLEncoder.encode(resourceId, "UTF-8")
+                + "/" + subResource);
+        url.putAll(params);
+
+        return executeAPIGet(profile, url.build());
+    }
+
     public static HttpResponse getAPIConfig(ServerProfile profile,
                                             String api,
                                             String resource,
@@ -813,8 +956,7 @@ public class RestUtil {
 				+ "/apis/"+api
 				+ "/" + resource + "/" + resourceId;
 
-		HttpRequest restRequest = REQUEST_FACTORY.buildDeleteRequest(new GenericUrl(importCmd));
-		restRequest.setReadTimeout(0);
+		HttpRequest restRequest = getRequestFactory(profile).buildDeleteRequest(new GenericUrl(importCmd));
 
 		//logger.info(PrintUtil.formatRequest(restRequest));
 
@@ -838,18 +980,19 @@ public class RestUtil {
         // trying to construct the URL like
         // https://api.enterprise.apigee.com/v1/organizations/apigee-cs/apis/
         // success response is ignored
-    	if (accessToken == null) {
+    	if (!TokenManager.forProfile(profile).hasToken()) {
 			logger.info("=============Initialising MFA================");
 	
-	        HttpRequest restRequest = REQUEST_FACTORY
+	        HttpRequest restRequest = getRequestFactory(profile)
 	                .buildGetRequest(new GenericUrl(profile.getHostUrl() + "/"
 	                        + profile.getApi_version() + "/organizations/"
 	                        + profile.getOrg() + "/apis/"));
-	        restRequest.setReadTimeout(0);
 	
 	        try {
-	            HttpResponse response = executeAPI(profile, restRequest);            
+	            HttpResponse response = executeAPI(profile, restRequest);
 	            //ignore response - we just wanted the MFA initialised
+	            //consume it so the connection goes back to the pool
+	            response.ignore();
 	            logger.info("=============MFA Initialised================");
 	        } catch (HttpResponseException e) {
 	            logger.error(e.getMessage());
@@ -859,13 +1002,12 @@ public class RestUtil {
     	}
     }
 
-    private static HttpResponse executeAPIGet(ServerProfile profile, String importCmd)
+    static HttpResponse executeAPIGet(ServerProfile profile, String importCmd)
             throws IOException {
 
-        HttpRequest restRequest = REQUEST_FACTORY
+        HttpRequest restRequest = getRequestFactory(profile)
                 .buildGetRequest(
                         new GenericUrl(importCmd));
-        restRequest.setReadTimeout(0);
 
         HttpResponse response;
         try {
@@ -886,10 +1028,9 @@ public class RestUtil {
         ByteArrayContent content = new ByteArrayContent("application/json",
                 payload.getBytes());
 
-        HttpRequest restRequest = REQUEST_FACTORY
+        HttpRequest restRequest = getRequestFactory(profile)
                 .buildPostRequest(
                         new GenericUrl(importCmd), content);
-        restRequest.setReadTimeout(0);
 
         HttpResponse response;
         try {
@@ -901,132 +1042,137 @@ public class RestUtil {
 
         return response;
     }
+
+    /**
+     * Upload body streamed from the file with its length, so the file is
+     * never held in memory and retried PUTs re-read it from disk
+     */
+    private static FileContent getFileContent(String filePath)
+            throws IOException {
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            throw new IOException("File not found " + filePath);
+        }
+        return new FileContent("application/octet-stream", file);
+    }
   
     /**
      * OAuth token acquisition for calling management APIs
-     * Access Token expiry 1799 sec = 30 mins long enough to finish any maven task
+     * Tokens are cached per org/user/token url by TokenManager
      * MFA Token: TOTP expires in 30 secs. User needs to give a token with some validity
      */
     private static HttpResponse executeAPI(ServerProfile profile, HttpRequest request) 
             throws IOException {
         HttpHeaders headers = request.getHeaders();
-        MgmtAPIClient client = new MgmtAPIClient();
-        String mfaToken = profile.getMFAToken();
-        String tokenUrl = profile.getTokenUrl();
-        String mgmtAPIClientId = (profile.getClientId()!=null && !profile.getClientId().equalsIgnoreCase(""))?profile.getClientId():"edgecli";
-        String mgmtAPIClientSecret = (profile.getClientSecret()!=null && !profile.getClientSecret().equalsIgnoreCase(""))?profile.getClientSecret():"edgeclisecret";
         headers.setAccept("application/json");
+        /* the server may take longer than a GET to process an uploaded file */
+        if (request.getContent() instanceof FileContent) {
+            request.setReadTimeout(profile.getHttpUploadReadTimeout());
+        }
         /**** Basic Auth - Backward compatibility ****/
         if (profile.getAuthType() != null &&
             profile.getAuthType().equalsIgnoreCase("basic")) {
                 headers.setBasicAuthentication(profile.getCredential_user(),
                                                 profile.getCredential_pwd());
                 logger.info(PrintUtil.formatRequest(request));
-                return request.execute();
+                return executeWithRetry(profile, request);
         }
         /**** OAuth ****/
-        if (profile.getBearerToken() != null && !profile.getBearerToken().equalsIgnoreCase("")){
-        	//Need to validate access token only if refresh token is provided. 
-	        	//If access token is not valid, create a bearer token using the refresh token 
-	        	//If access token is valid, use that 
-        	accessToken = (accessToken!=null)?accessToken:profile.getBearerToken();        	
-        	if(profile.getRefreshToken() != null && !profile.getRefreshToken().equalsIgnoreCase("")){
-        		if(isValidBearerToken(accessToken, profile, mgmtAPIClientId)){
-        			logger.info("Access Token valid");
-        			headers.setAuthorization("Bearer " + accessToken);
-                 }else{
-                	 try{
-                		 AccessToken token = null;
-                		 logger.info("Access token not valid so acquiring new access token using Refresh Token");
-                		 token = client.getAccessTokenFromRefreshToken(
-		     			 			tokenUrl,
-		     			 			mgmtAPIClientId, mgmtAPIClientSecret, 
-		     			 			profile.getRefreshToken());
-                		 logger.info("New Access Token acquired");
-			         	 accessToken = token.getAccess_token();
-			             headers.setAuthorization("Bearer " + accessToken);
-                	 }catch (Exception e) {
-                        logger.error(e.getMessage());
-                        throw new IOException(e.getMessage());
-                     }
-                 }
-        	}
-        	//if refresh token is not passed, validate the access token and use it accordingly
-        	else{
-        		logger.info("Validating the access token passed");
-        		if(isValidBearerToken(profile.getBearerToken(), profile, mgmtAPIClientId)){
-        			logger.info("Access Token valid");
-        			accessToken = profile.getBearerToken();
-                    headers.setAuthorization("Bearer " + accessToken);
-        		}else{
-        			logger.error("Access token not valid");
-        			throw new IOException ("Access token not valid");
-        		}
-        		
-        	}
+        TokenManager tokens = TokenManager.forProfile(profile);
+        String accessToken = tokens.getAccessToken();
+        headers.setAuthorization("Bearer " + accessToken);
+        logger.info(PrintUtil.formatRequest(request));
+        try {
+            return executeWithRetry(profile, request);
+        } catch (HttpResponseException e) {
+            /* cached token revoked or expired early, renew once */
+            if (e.getStatusCode() != 401) throw e;
+            tokens.invalidate(accessToken);
+            String renewed = tokens.getAccessToken();
+            if (renewed.equals(accessToken)) throw e;
+            logger.info("Access token rejected. Retrying with a new token.");
+            headers.setAuthorization("Bearer " + renewed);
+            return executeWithRetry(profile, request);
         }
-        else if (accessToken != null) {
-            // subsequent calls
-            logger.debug("Reusing mgmt API access token");
-            headers.setAuthorization("Bearer " + accessToken);
-        } else {
-            logger.info("Acquiring mgmt API token from " + tokenUrl);
+    }
+
+    /**
+     * Retries idempotent requests (GET/PUT/DELETE) on transient failures with
+     * exponential backoff and full jitter. POST is sent once, see RetryPolicy.
+     * With the concurrency limiter 429 is handled by executeLimited only, so
+     * a throttled call is not re-sent by both loops.
+     */
+    private static HttpResponse executeWithRetry(ServerProfile profile,
+                                                 HttpRequest request)
+            throws IOException {
+        RetryPolicy policy = RetryPolicy.forProfile(profile);
+        String method = request.getMethod().name();
+        if (!RetryPolicy.isIdempotent(method) || policy.getMaxAttempts() <= 1) {
+            return executeLimited(profile, request);
+        }
+        boolean limited = ConcurrencyLimiter.forProfile(profile) != null;
+        String call = RetryPolicy.callName(method, request.getUrl().getRawPath());
+        for (int attempt = 1; ; attempt++) {
             try {
-                AccessToken token = null;
-                if (mfaToken == null || mfaToken.length() == 0) {
-                    logger.info("MFA token not provided. Skipping.");
-                    token = client.getAccessToken(
-                            tokenUrl,
-                            mgmtAPIClientId, mgmtAPIClientSecret,
-                            profile.getCredential_user(),
-                            profile.getCredential_pwd());
-                } else {
-                    logger.info("Making use of the MFA token provided.");
-                    token = client.getAccessToken(
-                            tokenUrl,
-                            mgmtAPIClientId, mgmtAPIClientSecret,
-                            profile.getCredential_user(),
-                            profile.getCredential_pwd(),
-                            profile.getMFAToken());
+                return executeLimited(profile, request);
+            } catch (IOException e) {
+                if (attempt >= policy.getMaxAttempts()
+                        || !RetryPolicy.isTransient(e)
+                        || (limited && RetryPolicy.isThrottled(e))) {
+                    throw e;
                 }
-                accessToken = token.getAccess_token();
-                headers.setAuthorization("Bearer " + accessToken);
-            } catch (Exception e) {
-            	logger.error(e.getMessage());
-                throw new IOException(e.getMessage());
+                policy.backOff(call, attempt, e);
             }
         }
-        logger.info(PrintUtil.formatRequest(request));
-        return request.execute();
     }
-    
-    
+
     /**
-     * This method is used to validate the Bearer token. It validates the source and the expiration and if the token is about to expire in 30 seconds, set as invalid token
-     * @param accessToken
-     * @param profile
-     * @param clientId
-     * @return
-     * @throws IOException
+     * Executes the request within the adaptive concurrency limit of the
+     * management host. 429 responses were not processed by the server and
+     * are re-issued once the limiter lets calls through again (Retry-After).
+     * Re-issued calls and the time waiting for the limiter are counted in
+     * the retry report.
      */
-    private static boolean isValidBearerToken(String accessToken, ServerProfile profile, String clientId) throws IOException{
-    	boolean isValid = false;
-    	try {
-		    JWT jwt = JWT.decode(accessToken);
-		    String jwtClientId = jwt.getClaim("client_id").asString();
-		    String jwtEmailId = jwt.getClaim("email").asString();
-		    long jwtExpiresAt = jwt.getExpiresAt().getTime()/1000;
-		    long difference = jwtExpiresAt - (System.currentTimeMillis()/1000);
-		    if(jwt!= null && jwtClientId!=null && jwtClientId.equals(clientId)
-	    		&& jwtEmailId!=null && jwtEmailId.equalsIgnoreCase(profile.getCredential_user())
-	    		&& profile.getTokenUrl().contains(jwt.getIssuer())
-	    		&& difference >= 30){
-		    	isValid = true;
-		    }
-		} catch (JWTDecodeException exception){
-		   throw new IOException(exception.getMessage());
-		}
-    	return isValid;
+    private static HttpResponse executeLimited(ServerProfile profile,
+                                               HttpRequest request)
+            throws IOException {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.forProfile(profile);
+        if (limiter == null) {
+            return request.execute();
+        }
+        String call = null;
+        for (int attempt = 1; ; attempt++) {
+            long start;
+            try {
+                long waiting = System.currentTimeMillis();
+                start = limiter.acquire();
+                if (attempt > 1) {
+                    RetryPolicy.record(call, System.currentTimeMillis() - waiting);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for management API");
+            }
+            int statusCode = 0;
+            String retryAfter = null;
+            try {
+                HttpResponse response = request.execute();
+                statusCode = response.getStatusCode();
+                return response;
+            } catch (HttpResponseException e) {
+                statusCode = e.getStatusCode();
+                retryAfter = e.getHeaders().getRetryAfter();
+                if (statusCode != 429 || attempt >= MAX_THROTTLED_ATTEMPTS) {
+                    throw e;
+                }
+                logger.info("Management API throttled, retrying "
+                        + request.getMethod() + " " + request.getUrl());
+                call = RetryPolicy.callName(request.getMethod().name(),
+                                            request.getUrl().getRawPath());
+            } finally {
+                limiter.release(start, statusCode, retryAfter);
+            }
+        }
     }
     
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+import com.google.api.client.http.HttpResponseException;
+
+/**
+ * Exponential backoff with full jitter for transient management API
+ * failures (connection errors, 500/502/503/504, 429).
+ *
+ * GET, PUT and DELETE are retried by RestUtil. POST is never retried at
+ * the HTTP level; the reconcile engine retries a create only after it
+ * confirmed the entity still does not exist. With adaptive concurrency a
+ * 429 is re-issued by the limiter instead, see isThrottled.
+ *
+ * Retries and the time spent waiting are counted per call
+ * (method and resource type) and reported with report().
+ */
+public class RetryPolicy {
+
+    static Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final Pattern STATUS_MESSAGE = Pattern.compile("^(\\d{3}) ");
+
+    private static final Map<String, Counter> counters =
+                                        new TreeMap<String, Counter>();
+
+    private static final Random random = new Random();
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    /**
+     * Policy from apigee.http.retryMaxAttempts, retryBaseDelay, retryMaxDelay
+     */
+    public static RetryPolicy forProfile(ServerProfile profile) {
+        return new RetryPolicy(profile.getHttpRetryMaxAttempts(),
+                                profile.getHttpRetryBaseDelay(),
+                                profile.getHttpRetryMaxDelay());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Methods that can be repeated without changing the outcome
+     */
+    public static boolean isIdempotent(String method) {
+        return "GET".equalsIgnoreCase(method) || "PUT".equalsIgnoreCase(method)
+                || "DELETE".equalsIgnoreCase(method)
+                || "HEAD".equalsIgnoreCase(method);
+    }
+
+    public static boolean isTransientStatus(int statusCode) {
+        return statusCode == 429 || statusCode == 500 || statusCode == 502
+                || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * Whether the failure may succeed when repeated. RestUtil rethrows HTTP
+     * errors as plain IOExceptions carrying the status line as message.
+     */
+    public static boolean isTransient(IOException e) {
+        if (e instanceof HttpResponseException) {
+            return isTransientStatus(((HttpResponseException) e).getStatusCode());
+        }
+        if (e instanceof UnknownHostException) {
+            return false;
+        }
+        if (e instanceof SocketException || e instanceof SocketTimeoutException
+                || e.getClass().getName().equals(
+                        "org.apache.http.NoHttpResponseException")) {
+            return true;
+        }
+        if (e.getMessage() != null) {
+            Matcher m = STATUS_MESSAGE.matcher(e.getMessage());
+            if (m.find()) {
+                return isTransientStatus(Integer.parseInt(m.group(1)));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 429, re-issued by the concurrency limiter when it is active
+     */
+    public static boolean isThrottled(IOException e) {
+        if (e instanceof HttpResponseException) {
+            return ((HttpResponseException) e).getStatusCode() == 429;
+        }
+        return e.getMessage() != null && e.getMessage().startsWith("429 ");
+    }
+
+    /**
+     * Full jitter: random delay between 0 and min(maxDelay, base * 2^(n-1))
+     * @param attempt the attempt that failed, starting at 1
+     */
+    public long getDelay(int attempt) {
+        long ceiling = baseDelay;
+        for (int i = 1; i < attempt && ceiling < maxDelay; i++) {
+            ceiling *= 2;
+        }
+        ceiling = Math.min(maxDelay, ceiling);
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * Waits before the next attempt and counts the retry against "call"
+     */
+    public void backOff(String call, int attempt, IOException cause)
+            throws IOException {
+        long delay = getDelay(attempt);
+        logger.info(call + " failed (" + firstLine(cause.getMessage())
+                    + "). Retrying in " + delay + " ms, attempt "
+                    + (attempt + 1) + " of " + maxAttempts);
+        record(call, delay);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) return "no message";
+        int i = message.indexOf('\n');
+        return (i > 0) ? message.substring(0, i) : message;
+    }
+
+    /**
+     * "METHOD resource" e.g. "PUT keyvaluemaps", from a management API url
+     */
+    public static String callName(String method, String path) {
+        String[] parts = path.split("/");
+        String resource = null;
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.equals("organizations") || part.equals("environments")
+                    || part.equals("apis") || part.equals("developers")
+                    || part.equals("revisions")) {
+                i++;
+                resource = (resource == null) ? part : resource;
+                continue;
+            }
+            if (part.length() > 0 && !part.startsWith("v1")) {
+                resource = part;
+                break;
+            }
+        }
+        return method + " " + (resource == null ? path : resource);
+    }
+
+    /**
+     * Counts a retry of "call" made outside backOff, e.g. a throttled call
+     * re-issued by the concurrency limiter
+     */
+    static void record(String call, long delayMs) {
+        counter(call).record(delayMs);
+    }
+
+    private static Counter counter(String call) {
+        synchronized (counters) {
+            Counter counter = counters.get(call);
+            if (counter == null) {
+                counter = new Counter();
+                counters.put(call, counter);
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Logs retries and time spent waiting per call type
+     */
+    public static void report(Logger log) {
+        synchronized (counters) {
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                log.info("Retries " + entry.getKey() + ": "
+                        + entry.getValue().retries.get() + " retries, "
+                        + entry.getValue().delay.get() + " ms waiting");
+            }
+        }
+    }
+
+    private static class Counter {
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong delay = new AtomicLong();
+
+        void record(long delayMs) {
+            retries.incrementAndGet();
+            delay.addAndGet(delayMs);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+
+/**
+ * Encrypted file of OAuth tokens shared by Maven runs (apigee.tokenCache).
+ *
+ * Entries are keyed by token url, client id and user and encrypted with
+ * AES-GCM using a key derived from apigee.tokenCache.passphrase, or from
+ * the user's password when no passphrase is given. The file is locked
+ * while a token is read or fetched, so concurrent builds wait for one
+ * fetch and reuse its token.
+ */
+public class TokenCache {
+
+    static Logger logger = LoggerFactory.getLogger(TokenCache.class);
+
+    static final String DEFAULT_FILE = ".apigee" + File.separator + "token-cache";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int KEY_ITERATIONS = 65536;
+    private static final int IV_LENGTH = 12;
+
+    private static final Map<String, TokenCache> caches =
+                                new ConcurrentHashMap<String, TokenCache>();
+
+    private final File file;
+    private final char[] passphrase;
+    private SecretKey key;
+    private String keySalt;
+    private RandomAccessFile lockedFile;
+    private FileLock fileLock;
+    private Properties entries;
+
+    TokenCache(File file, char[] passphrase) {
+        this.file = file;
+        this.passphrase = passphrase;
+    }
+
+    /**
+     * Cache configured in the profile, null when the cache is disabled
+     */
+    public static TokenCache forProfile(ServerProfile profile) {
+        String location = profile.getTokenCache();
+        if (location == null || location.trim().length() == 0 ||
+                location.equalsIgnoreCase("false")) {
+            return null;
+        }
+        String secret = profile.getTokenCachePassphrase();
+        if (secret == null || secret.length() == 0) {
+            secret = profile.getCredential_pwd();
+        }
+        if (secret == null || secret.length() == 0) {
+            logger.warn("Token cache needs apigee.tokenCache.passphrase or a password. "
+                        + "Token cache disabled.");
+            return null;
+        }
+
+        File file = location.equalsIgnoreCase("true") ?
+                new File(System.getProperty("user.home"), DEFAULT_FILE) :
+                new File(location);
+        String id = file.getAbsolutePath() + "|" + hash(secret);
+        TokenCache cache = caches.get(id);
+        if (cache == null) {
+            synchronized (caches) {
+                cache = caches.get(id);
+                if (cache == null) {
+                    cache = new TokenCache(file, secret.toCharArray());
+                    caches.put(id, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Entry key for token url, client id and user
+     */
+    public static String key(String tokenUrl, String clientId, String user) {
+        return hash(tokenUrl + "|" + clientId + "|" + user);
+    }
+
+    /**
+     * Locks the cache file for this JVM and other processes. Blocks until
+     * the lock is available. Must be followed by unlock().
+     */
+    public synchronized void lock() throws IOException {
+        while (fileLock != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for token cache");
+            }
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && dir.mkdirs()) {
+            restrict(dir);
+        }
+        boolean created = !file.exists();
+        lockedFile = new RandomAccessFile(file, "rw");
+        if (created) {
+            restrict(file);
+        }
+        try {
+            fileLock = lockedFile.getChannel().lock();
+            entries = load(lockedFile.getChannel());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public synchronized void unlock() {
+        close();
+        notifyAll();
+    }
+
+    /**
+     * Cached token as {access token, refresh token, expiry (epoch secs)},
+     * null when not cached or not readable with this passphrase.
+     * Requires the lock.
+     */
+    public synchronized String[] get(String entryKey) {
+        String value = entries.getProperty(entryKey);
+        if (value == null) {
+            return null;
+        }
+        try {
+            String[] token = new String(decrypt(value), UTF8).split("\n", -1);
+            return (token.length == 3) ? token : null;
+        } catch (GeneralSecurityException e) {
+            logger.debug("Token cache entry not readable " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the token and writes the file. Requires the lock.
+     */
+    public synchronized void put(String entryKey, String accessToken,
+                                 String refreshToken, long expiresAt)
+            throws IOException {
+        String value = accessToken + "\n"
+                + (refreshToken == null ? "" : refreshToken) + "\n"
+                + expiresAt;
+        try {
+            entries.setProperty(entryKey, encrypt(value.getBytes(UTF8)));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Token cache encryption failed " + e.getMessage());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entries.store(out, "apigee-config-maven-plugin token cache");
+        FileChannel channel = lockedFile.getChannel();
+        channel.truncate(0);
+        channel.position(0);
+        channel.write(ByteBuffer.wrap(out.toByteArray()));
+        channel.force(false);
+    }
+
+    private Properties load(FileChannel channel) throws IOException {
+        Properties properties = new Properties();
+        long size = channel.size();
+        if (size > 0) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            channel.position(0);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole file
+            }
+            properties.load(new ByteArrayInputStream(buffer.array()));
+        }
+        return properties;
+    }
+
+    private void close() {
+        try {
+            if (fileLock != null) fileLock.release();
+        } catch (IOException e) {
+            logger.debug("Token cache unlock failed " + e.getMessage());
+        }
+        try {
+            if (lockedFile != null) lockedFile.close();
+        } catch (IOException e) {
+            logger.debug("Token cache close failed " + e.getMessage());
+        }
+        fileLock = null;
+        lockedFile = null;
+        entries = null;
+    }
+
+    private String encrypt(byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, getKey(), new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(plain);
+        byte[] value = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, value, 0, iv.length);
+        System.arraycopy(encrypted, 0, value, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    private byte[] decrypt(String value) throws GeneralSecurityException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException(e.getMessage());
+        }
+        if (bytes.length <= IV_LENGTH) {
+            throw new GeneralSecurityException("Invalid token cache entry");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, getKey(),
+                        new GCMParameterSpec(128, bytes, 0, IV_LENGTH));
+        return cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH);
+    }
+
+    /**
+     * Key derived once per JVM and salt. The salt is stored in the cache file.
+     */
+    private SecretKey getKey() throws GeneralSecurityException {
+        String salt = entries.getProperty("salt");
+        if (salt == null) {
+            byte[] random = new byte[16];
+            new SecureRandom().nextBytes(random);
+            salt = Base64.getEncoder().encodeToString(random);
+            entries.setProperty("salt", salt);
+        }
+        if (key == null || !salt.equals(keySalt)) {
+            SecretKeyFactory factory =
+                        SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            byte[] encoded = factory.generateSecret(new PBEKeySpec(passphrase,
+                    Base64.getDecoder().decode(salt),
+                    KEY_ITERATIONS, 128)).getEncoded();
+            key = new SecretKeySpec(encoded, "AES");
+            keySalt = salt;
+        }
+        return key;
+    }
+
+    private static void restrict(File f) {
+        f.setReadable(false, false);
+        f.setWritable(false, false);
+        f.setReadable(true, true);
+        f.setWritable(true, true);
+        if (f.isDirectory()) {
+            f.setExecutable(false, false);
+            f.setExecutable(true, true);
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(UTF8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+}
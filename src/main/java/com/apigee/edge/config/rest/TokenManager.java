@@ -0,0 +1,328 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.rest;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.apigee.edge.config.utils.ServerProfile;
+import com.apigee.mgmtapi.sdk.client.MgmtAPIClient;
+import com.apigee.mgmtapi.sdk.model.AccessToken;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+
+/**
+ * OAuth access tokens for management API calls, one per org, user and
+ * token url.
+ *
+ * The token and its decoded expiry are cached, so the request path only
+ * compares two numbers. When the token is about to expire a single thread
+ * fetches a new one while concurrent callers wait for it (single flight).
+ * Tokens that can be refreshed (refresh token available) are renewed in
+ * the background ahead of the 30 second validity window.
+ */
+public class TokenManager {
+
+    static Logger logger = LoggerFactory.getLogger(TokenManager.class);
+
+    /* tokens with less validity left are not used */
+    static final long MIN_VALIDITY = 30; // secs
+    /* background refresh starts this long before MIN_VALIDITY is reached */
+    static final long REFRESH_AHEAD = 60; // secs
+    /* Access Token expiry 1799 sec, used when the token is not a JWT */
+    static final long DEFAULT_EXPIRY = 1799; // secs
+
+    private static final Map<String, TokenManager> managers =
+                                new ConcurrentHashMap<String, TokenManager>();
+
+    private static final ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "apigee-token-refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private final ServerProfile profile;
+    private final MgmtAPIClient client = new MgmtAPIClient();
+    private final String clientId;
+    private final String clientSecret;
+
+    private volatile Token token;
+    private boolean bearerChecked;
+
+    TokenManager(ServerProfile profile) {
+        this.profile = profile;
+        this.clientId = (profile.getClientId() != null &&
+                !profile.getClientId().equalsIgnoreCase("")) ?
+                                        profile.getClientId() : "edgecli";
+        this.clientSecret = (profile.getClientSecret() != null &&
+                !profile.getClientSecret().equalsIgnoreCase("")) ?
+                                        profile.getClientSecret() : "edgeclisecret";
+    }
+
+    public static TokenManager forProfile(ServerProfile profile) {
+        String key = profile.getOrg() + "|" + profile.getCredential_user()
+                        + "|" + profile.getTokenUrl();
+        TokenManager manager = managers.get(key);
+        if (manager != null) {
+            return manager;
+        }
+        synchronized (managers) {
+            manager = managers.get(key);
+            if (manager == null) {
+                manager = new TokenManager(profile);
+                managers.put(key, manager);
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * true once a token was acquired and is still valid
+     */
+    public boolean hasToken() {
+        Token current = token;
+        return current != null && current.isValid();
+    }
+
+    /**
+     * Valid access token, acquired or refreshed when needed
+     */
+    public String getAccessToken() throws IOException {
+        Token current = token;
+        if (current != null && current.isValid()) {
+            logger.debug("Reusing mgmt API access token");
+            return current.accessToken;
+        }
+        return renew(current).accessToken;
+    }
+
+    /**
+     * Drops the cached token, e.g. after the server rejected it
+     */
+    public synchronized void invalidate(String accessToken) {
+        if (token != null && token.accessToken.equals(accessToken)) {
+            token = new Token(token.accessToken, token.refreshToken, 0);
+        }
+    }
+
+    /**
+     * Single flight: the first caller fetches, the others find the new token
+     * once they get the lock.
+     */
+    private synchronized Token renew(Token stale) throws IOException {
+        if (token != null && token != stale && token.isValid()) {
+            return token;
+        }
+        Token fresh = fetchShared(token);
+        token = fresh;
+        scheduleRefresh(fresh);
+        return fresh;
+    }
+
+    /**
+     * With apigee.tokenCache a valid token cached by an earlier or a
+     * concurrent build is reused, otherwise the fetched token is stored.
+     * The cache file stays locked while fetching so concurrent builds
+     * do not fetch at the same time.
+     */
+    private Token fetchShared(Token current) throws IOException {
+        TokenCache cache = TokenCache.forProfile(profile);
+        if (cache == null) {
+            return fetch(current);
+        }
+        String key = TokenCache.key(profile.getTokenUrl(), clientId,
+                                        profile.getCredential_user());
+        cache.lock();
+        try {
+            String[] cached = cache.get(key);
+            if (cached != null) {
+                Token token = new Token(cached[0],
+                        cached[1].length() > 0 ? cached[1] : null,
+                        Long.parseLong(cached[2]));
+                if (token.isValid() && (current == null ||
+                        !token.accessToken.equals(current.accessToken))) {
+                    logger.info("Using mgmt API token from token cache");
+                    bearerChecked = true;
+                    return token;
+                }
+            }
+            Token fresh = fetch(current);
+            cache.put(key, fresh.accessToken, fresh.refreshToken,
+                                                        fresh.expiresAt);
+            return fresh;
+        } finally {
+            cache.unlock();
+        }
+    }
+
+    private Token fetch(Token current) throws IOException {
+        String refreshToken = (current != null && current.refreshToken != null) ?
+                                current.refreshToken : profile.getRefreshToken();
+        boolean hasRefreshToken = refreshToken != null &&
+                                    !refreshToken.equalsIgnoreCase("");
+
+        /* bearer token passed as parameter, validated once */
+        if (!bearerChecked && profile.getBearerToken() != null &&
+                !profile.getBearerToken().equalsIgnoreCase("")) {
+            bearerChecked = true;
+            logger.info("Validating the access token passed");
+            Token bearer = decode(profile.getBearerToken(), refreshToken, true);
+            if (bearer != null && bearer.isValid()) {
+                logger.info("Access Token valid");
+                return bearer;
+            }
+            if (!hasRefreshToken) {
+                logger.error("Access token not valid");
+                throw new IOException("Access token not valid");
+            }
+            logger.info("Access token not valid so acquiring new access token using Refresh Token");
+        }
+
+        try {
+            AccessToken response;
+            if (hasRefreshToken) {
+                response = client.getAccessTokenFromRefreshToken(
+                        profile.getTokenUrl(), clientId, clientSecret,
+                        refreshToken);
+                logger.info("New Access Token acquired");
+            } else if (profile.getBearerToken() != null &&
+                    !profile.getBearerToken().equalsIgnoreCase("")) {
+                logger.error("Access token not valid");
+                throw new IOException("Access token not valid");
+            } else {
+                logger.info("Acquiring mgmt API token from " + profile.getTokenUrl());
+                String mfaToken = profile.getMFAToken();
+                if (mfaToken == null || mfaToken.length() == 0) {
+                    logger.info("MFA token not provided. Skipping.");
+                    response = client.getAccessToken(profile.getTokenUrl(),
+                            clientId, clientSecret,
+                            profile.getCredential_user(),
+                            profile.getCredential_pwd());
+                } else {
+                    logger.info("Making use of the MFA token provided.");
+                    response = client.getAccessToken(profile.getTokenUrl(),
+                            clientId, clientSecret,
+                            profile.getCredential_user(),
+                            profile.getCredential_pwd(), mfaToken);
+                }
+            }
+            Token fresh = decode(response.getAccess_token(),
+                    response.getRefresh_token() != null ?
+                            response.getRefresh_token() : refreshToken, false);
+            if (fresh == null) {
+                throw new IOException("Invalid access token response");
+            }
+            return fresh;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the JWT once to read its expiry. Tokens passed in by the user
+     * are also checked against the client id, user and token url.
+     */
+    private Token decode(String accessToken, String refreshToken,
+                         boolean verifyOwner) throws IOException {
+        if (accessToken == null) {
+            return null;
+        }
+        try {
+            JWT jwt = JWT.decode(accessToken);
+            if (verifyOwner) {
+                String jwtClientId = jwt.getClaim("client_id").asString();
+                String jwtEmailId = jwt.getClaim("email").asString();
+                if (jwtClientId == null || !jwtClientId.equals(clientId)
+                        || jwtEmailId == null
+                        || !jwtEmailId.equalsIgnoreCase(profile.getCredential_user())
+                        || jwt.getIssuer() == null
+                        || !profile.getTokenUrl().contains(jwt.getIssuer())) {
+                    return null;
+                }
+            }
+            Date expiresAt = jwt.getExpiresAt();
+            long exp = (expiresAt != null) ? expiresAt.getTime() / 1000 :
+                            now() + DEFAULT_EXPIRY;
+            return new Token(accessToken, refreshToken, exp);
+        } catch (JWTDecodeException e) {
+            if (verifyOwner) {
+                throw new IOException(e.getMessage());
+            }
+            return new Token(accessToken, refreshToken, now() + DEFAULT_EXPIRY);
+        }
+    }
+
+    private void scheduleRefresh(final Token current) {
+        if (current.refreshToken == null ||
+                current.refreshToken.equalsIgnoreCase("")) {
+            return;
+        }
+        long delay = Math.max(0, current.expiresAt - now()
+                                    - MIN_VALIDITY - REFRESH_AHEAD);
+        refresher.schedule(new Runnable() {
+            public void run() {
+                if (token != current) return;
+                try {
+                    logger.debug("Refreshing mgmt API access token");
+                    synchronized (TokenManager.this) {
+                        if (token != current) return;
+                        Token fresh = fetchShared(current);
+                        token = fresh;
+                        scheduleRefresh(fresh);
+                    }
+                } catch (IOException e) {
+                    /* the next call retries in the foreground */
+                    logger.debug("Background token refresh failed " + e.getMessage());
+                }
+            }
+        }, delay, TimeUnit.SECONDS);
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static class Token {
+        final String accessToken;
+        final String refreshToken;
+        final long expiresAt; // epoch secs
+
+        Token(String accessToken, String refreshToken, long expiresAt) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid() {
+            return expiresAt - now() >= MIN_VALIDITY;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Iterator;
@@ -48,6 +49,50 @@ import java.io.IOException;
 
 public class ConsolidatedConfigReader {
 
+    private static final Map<String, Parsed> parsed = new HashMap<String, Parsed>();
+
+    private static class Parsed {
+        final long lastModified;
+        final long length;
+        final JSONObject edgeConf;
+
+        Parsed(File configFile, JSONObject edgeConf) {
+            this.lastModified = configFile.lastModified();
+            this.length = configFile.length();
+            this.edgeConf = edgeConf;
+        }
+
+        boolean isCurrent(File configFile) {
+            return lastModified == configFile.lastModified()
+                    && length == configFile.length();
+        }
+    }
+
+    /**
+     * edge.json is parsed once and shared by the goals of a build (e.g.
+     * plan, deployAll); it is parsed again when the file changed.
+     * The parsed tree is only read.
+     */
+    static JSONObject parse(File configFile)
+            throws ParseException, IOException {
+        String key = configFile.getCanonicalPath();
+        synchronized (parsed) {
+            Parsed entry = parsed.get(key);
+            if (entry != null && entry.isCurrent(configFile)) {
+                return entry.edgeConf;
+            }
+            BufferedReader bufferedReader = new BufferedReader(
+                new java.io.FileReader(configFile));
+            try {
+                JSONObject edgeConf = (JSONObject)new JSONParser().parse(bufferedReader);
+                parsed.put(key, new Parsed(configFile, edgeConf));
+                return edgeConf;
+            } finally {
+                bufferedReader.close();
+            }
+        }
+    }
+
     /**
      * Example Hierarchy
      * envConfig.cache.<env>.caches
@@ -63,13 +108,9 @@ public class ConsolidatedConfigReader {
 
         Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
-        JSONParser parser = new JSONParser();
         ArrayList out = null;    
         try {
-            BufferedReader bufferedReader = new BufferedReader(
-                new java.io.FileReader(configFile));
-
-            JSONObject edgeConf     = (JSONObject)parser.parse(bufferedReader);
+            JSONObject edgeConf     = parse(configFile);
             if (edgeConf == null) return null;
 
             JSONObject scopeConf  = (JSONObject)edgeConf.get(scope);
@@ -112,13 +153,9 @@ public class ConsolidatedConfigReader {
 
         Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
-        JSONParser parser = new JSONParser();
         ArrayList out = null;    
         try {
-            BufferedReader bufferedReader = new BufferedReader(
-                new java.io.FileReader(configFile));
-
-            JSONObject edgeConf     = (JSONObject)parser.parse(bufferedReader);
+            JSONObject edgeConf     = parse(configFile);
             if (edgeConf == null) return null;
 
             JSONObject scopeConf  = (JSONObject)edgeConf.get(scope);
@@ -158,14 +195,10 @@ public class ConsolidatedConfigReader {
 
         Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
-        JSONParser parser = new JSONParser();
         Map <String, List<String>> out = null;
         List<String> outStrs = null;
         try {
-            BufferedReader bufferedReader = new BufferedReader(
-                new java.io.FileReader(configFile));
-
-            JSONObject edgeConf     = (JSONObject)parser.parse(bufferedReader);
+            JSONObject edgeConf     = parse(configFile);
             if (edgeConf == null) return null;
 
             // orgConfig
@@ -210,19 +243,15 @@ public class ConsolidatedConfigReader {
 
         Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
-        JSONParser parser = new JSONParser();
         ArrayList<String> out = null;    
         try {
-            BufferedReader bufferedReader = new BufferedReader(
-                new java.io.FileReader(configFile));
-
-            JSONObject edgeConf     = (JSONObject)parser.parse(bufferedReader);
+            JSONObject edgeConf     = parse(configFile);
             if (edgeConf == null) return null;
 
             JSONObject scopeConf  = (JSONObject)edgeConf.get("apiConfig");
             if (scopeConf == null) return null;
 
-            return scopeConf.keySet();
+            return new LinkedHashSet<String>(scopeConf.keySet());
 
             // while( keys.hasNext() ) {
             //     out.add((String)keys.next());
@@ -250,13 +279,9 @@ public class ConsolidatedConfigReader {
 
         Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
-        JSONParser parser = new JSONParser();
         ArrayList out = null;    
         try {
-            BufferedReader bufferedReader = new BufferedReader(
-                new java.io.FileReader(configFile));
-
-            JSONObject edgeConf     = (JSONObject)parser.parse(bufferedReader);
+            JSONObject edgeConf     = parse(configFile);
             if (edgeConf == null) return null;
 
             JSONObject scopeConf  = (JSONObject)edgeConf.get("apiConfig");
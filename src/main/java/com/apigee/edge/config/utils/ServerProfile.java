@@ -53,6 +53,34 @@ public class ServerProfile {
 	private String bearerToken; //Mgmt API OAuth Token
 	private String refreshToken; //Mgmt API OAuth Refresh Token
 	private String authType; // Mgmt API Auth Type oauth|basic
+	private String tokenCache; // token cache file, true for ~/.apigee/token-cache
+	private String tokenCachePassphrase; // token cache encryption passphrase
+
+	private String httpTransport; // default|pooled
+	private int httpMaxConnections = 20; // pooled transport total connections
+	private int httpMaxConnectionsPerRoute = 10; // pooled transport per host
+	private int httpIdleTimeout = 30; // secs before idle connections are evicted
+	private int httpConnectTimeout = 20000; // ms
+	private int httpReadTimeout = 20000; // ms, 0 waits forever
+	private int httpUploadReadTimeout = 0; // ms, file uploads, 0 waits forever
+	private boolean httpAdaptiveConcurrency = true; // AIMD limit on 429/503
+	private int httpMaxConcurrency = 0; // upper limit, 0 uses configThreads
+	private int httpRetryMaxAttempts = 3; // attempts per idempotent call
+	private long httpRetryBaseDelay = 500; // ms, first backoff ceiling
+	private long httpRetryMaxDelay = 10000; // ms, backoff cap
+
+	private int configThreads = 1; // concurrent management API calls per goal
+	private String configThreadType; // platform|virtual
+	private int kvmEntryThreads = 1; // concurrent entry writes per KVM (CPS)
+	private int kvmOrgEntryThreads; // 0 uses kvmEntryThreads
+	private int kvmEnvEntryThreads;
+	private int kvmApiEntryThreads;
+	private boolean kvmSyncReadValues; // CPS sync reads values, writes changes only
+	private boolean configPlan; // log planned operations only
+	private boolean configSkipUnchanged = true; // compare before update
+	private boolean configPrune; // sync deletes remote only entities
+	private String resourceFileLedger; // digests of uploaded resource files
+	private String configPlanFile; // plan written in plan mode, applied otherwise
 	
 	public String getHostURL() {
 		return hostURL;
@@ -118,6 +146,214 @@ public class ServerProfile {
 		this.authType = authType;
 	}
 
+	public String getHttpTransport() {
+		return httpTransport;
+	}
+
+	public void setHttpTransport(String httpTransport) {
+		this.httpTransport = httpTransport;
+	}
+
+	public int getHttpMaxConnections() {
+		return httpMaxConnections;
+	}
+
+	public void setHttpMaxConnections(int httpMaxConnections) {
+		this.httpMaxConnections = httpMaxConnections;
+	}
+
+	public int getHttpMaxConnectionsPerRoute() {
+		return httpMaxConnectionsPerRoute;
+	}
+
+	public void setHttpMaxConnectionsPerRoute(int httpMaxConnectionsPerRoute) {
+		this.httpMaxConnectionsPerRoute = httpMaxConnectionsPerRoute;
+	}
+
+	public int getHttpIdleTimeout() {
+		return httpIdleTimeout;
+	}
+
+	public void setHttpIdleTimeout(int httpIdleTimeout) {
+		this.httpIdleTimeout = httpIdleTimeout;
+	}
+
+	public int getHttpConnectTimeout() {
+		return httpConnectTimeout;
+	}
+
+	public void setHttpConnectTimeout(int httpConnectTimeout) {
+		this.httpConnectTimeout = httpConnectTimeout;
+	}
+
+	public int getHttpReadTimeout() {
+		return httpReadTimeout;
+	}
+
+	public void setHttpReadTimeout(int httpReadTimeout) {
+		this.httpReadTimeout = httpReadTimeout;
+	}
+
+	public int getHttpUploadReadTimeout() {
+		return httpUploadReadTimeout;
+	}
+
+	public void setHttpUploadReadTimeout(int httpUploadReadTimeout) {
+		this.httpUploadReadTimeout = httpUploadReadTimeout;
+	}
+
+	public boolean isHttpAdaptiveConcurrency() {
+		return httpAdaptiveConcurrency;
+	}
+
+	public void setHttpAdaptiveConcurrency(boolean httpAdaptiveConcurrency) {
+		this.httpAdaptiveConcurrency = httpAdaptiveConcurrency;
+	}
+
+	public int getHttpMaxConcurrency() {
+		return httpMaxConcurrency;
+	}
+
+	public void setHttpMaxConcurrency(int httpMaxConcurrency) {
+		this.httpMaxConcurrency = httpMaxConcurrency;
+	}
+
+	public int getHttpRetryMaxAttempts() {
+		return httpRetryMaxAttempts;
+	}
+
+	public void setHttpRetryMaxAttempts(int httpRetryMaxAttempts) {
+		this.httpRetryMaxAttempts = httpRetryMaxAttempts;
+	}
+
+	public long getHttpRetryBaseDelay() {
+		return httpRetryBaseDelay;
+	}
+
+	public void setHttpRetryBaseDelay(long httpRetryBaseDelay) {
+		this.httpRetryBaseDelay = httpRetryBaseDelay;
+	}
+
+	public long getHttpRetryMaxDelay() {
+		return httpRetryMaxDelay;
+	}
+
+	public void setHttpRetryMaxDelay(long httpRetryMaxDelay) {
+		this.httpRetryMaxDelay = httpRetryMaxDelay;
+	}
+
+	public String getTokenCache() {
+		return tokenCache;
+	}
+
+	public void setTokenCache(String tokenCache) {
+		this.tokenCache = tokenCache;
+	}
+
+	public String getTokenCachePassphrase() {
+		return tokenCachePassphrase;
+	}
+
+	public void setTokenCachePassphrase(String tokenCachePassphrase) {
+		this.tokenCachePassphrase = tokenCachePassphrase;
+	}
+
+	public String getResourceFileLedger() {
+		return resourceFileLedger;
+	}
+
+	public void setResourceFileLedger(String resourceFileLedger) {
+		this.resourceFileLedger = resourceFileLedger;
+	}
+
+	public boolean isConfigPrune() {
+		return configPrune;
+	}
+
+	public void setConfigPrune(boolean configPrune) {
+		this.configPrune = configPrune;
+	}
+
+	public boolean isConfigSkipUnchanged() {
+		return configSkipUnchanged;
+	}
+
+	public void setConfigSkipUnchanged(boolean configSkipUnchanged) {
+		this.configSkipUnchanged = configSkipUnchanged;
+	}
+
+	public boolean isConfigPlan() {
+		return configPlan;
+	}
+
+	public void setConfigPlan(boolean configPlan) {
+		this.configPlan = configPlan;
+	}
+
+	public String getConfigPlanFile() {
+		return configPlanFile;
+	}
+
+	public void setConfigPlanFile(String configPlanFile) {
+		this.configPlanFile = configPlanFile;
+	}
+
+	public int getConfigThreads() {
+		return configThreads;
+	}
+
+	public void setConfigThreads(int configThreads) {
+		this.configThreads = configThreads;
+	}
+
+	public String getConfigThreadType() {
+		return configThreadType;
+	}
+
+	public void setConfigThreadType(String configThreadType) {
+		this.configThreadType = configThreadType;
+	}
+
+	public int getKvmEntryThreads() {
+		return kvmEntryThreads;
+	}
+
+	public void setKvmEntryThreads(int kvmEntryThreads) {
+		this.kvmEntryThreads = kvmEntryThreads;
+	}
+
+	public int getKvmOrgEntryThreads() {
+		return kvmOrgEntryThreads;
+	}
+
+	public void setKvmOrgEntryThreads(int kvmOrgEntryThreads) {
+		this.kvmOrgEntryThreads = kvmOrgEntryThreads;
+	}
+
+	public int getKvmEnvEntryThreads() {
+		return kvmEnvEntryThreads;
+	}
+
+	public void setKvmEnvEntryThreads(int kvmEnvEntryThreads) {
+		this.kvmEnvEntryThreads = kvmEnvEntryThreads;
+	}
+
+	public int getKvmApiEntryThreads() {
+		return kvmApiEntryThreads;
+	}
+
+	public void setKvmApiEntryThreads(int kvmApiEntryThreads) {
+		this.kvmApiEntryThreads = kvmApiEntryThreads;
+	}
+
+	public boolean isKvmSyncReadValues() {
+		return kvmSyncReadValues;
+	}
+
+	public void setKvmSyncReadValues(boolean kvmSyncReadValues) {
+		this.kvmSyncReadValues = kvmSyncReadValues;
+	}
+
 	public String getApplication() {
 		return application;
 	}
@@ -211,7 +447,7 @@ public class ServerProfile {
 	/**
 	 * @return cpsEnabled is CPS org
 	 */
-	public Boolean getCpsEnabled() throws MojoFailureException {
+	public synchronized Boolean getCpsEnabled() throws MojoFailureException {
 		if (this.cpsEnabled == null) {
 			try {
 				HashMap<String,String> features = queryOrgFeatures(this);
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2016 Apigee Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.apigee.edge.config.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool for management API calls.
+ *
+ * At most "threads" tasks are in flight at any time; submit blocks until a
+ * slot frees up so callers never queue more work than the pool can run.
+ * With a single thread tasks run inline on the calling thread.
+ *
+ * Thread types
+ * platform - fixed pool of daemon threads (default)
+ * virtual  - one virtual thread per task (Java 21+), falls back to platform
+ */
+public class WorkerPool {
+
+    public static final String THREAD_TYPE_PLATFORM = "platform";
+    public static final String THREAD_TYPE_VIRTUAL = "virtual";
+
+    private static Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    private final int threads;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    public WorkerPool(int threads, String threadType, String name) {
+        this.threads = Math.max(1, threads);
+        this.permits = new Semaphore(this.threads);
+        this.executor = (this.threads > 1) ?
+                            createExecutor(this.threads, threadType, name) : null;
+    }
+
+    /**
+     * Pool sized from apigee.config.threads / apigee.config.threadType
+     */
+    public static WorkerPool forProfile(ServerProfile profile, String name) {
+        return new WorkerPool(profile.getConfigThreads(),
+                                profile.getConfigThreadType(), name);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public <T> Future<T> submit(final Callable<T> task)
+            throws InterruptedException {
+        if (executor == null) {
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+
+        permits.acquire();
+        try {
+            return executor.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for submitted tasks to finish and releases the threads
+     */
+    public void shutdown() throws InterruptedException {
+        if (executor == null) return;
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            logger.debug("Waiting for worker threads to finish");
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads,
+                                                  String threadType,
+                                                  final String name) {
+        if (threadType != null &&
+                threadType.equalsIgnoreCase(THREAD_TYPE_VIRTUAL)) {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (Exception e) {
+                logger.info("Virtual threads require Java 21 or higher. " +
+                                "Using platform threads.");
+            }
+        }
+
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "apigee-" + name + "-" +
+                                            count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+package com.apigee.mgmtapi.sdk.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Form POST client for the OAuth token endpoint. Stateless and shared by all
+ * MgmtAPIClient instances; HttpURLConnection keeps connections alive between
+ * calls.
+ */
+public class TokenHttpClient {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final TokenHttpClient INSTANCE = new TokenHttpClient(20000, 60000);
+
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	public TokenHttpClient(int connectTimeout, int readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public static TokenHttpClient getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Form parameters in insertion order
+	 * @return
+	 */
+	public static Map<String, String> form() {
+		return new LinkedHashMap<String, String>();
+	}
+
+	/**
+	 * POST application/x-www-form-urlencoded with client Basic authentication
+	 * @param url
+	 * @param clientId
+	 * @param clientSecret
+	 * @param form
+	 * @return response body
+	 * @throws IOException on connection errors and non 2xx responses
+	 */
+	public String post(String url, String clientId, String clientSecret, Map<String, String> form)
+			throws IOException {
+		StringBuilder body = new StringBuilder();
+		for (Map.Entry<String, String> entry : form.entrySet()) {
+			if (body.length() > 0) {
+				body.append('&');
+			}
+			body.append(URLEncoder.encode(entry.getKey(), "UTF-8")).append('=')
+					.append(URLEncoder.encode(entry.getValue() == null ? "" : entry.getValue(), "UTF-8"));
+		}
+		byte[] payload = body.toString().getBytes(UTF8);
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Authorization", "Basic "
+				+ Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes(UTF8)));
+		connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setFixedLengthStreamingMode(payload.length);
+
+		OutputStream out = connection.getOutputStream();
+		try {
+			out.write(payload);
+		} finally {
+			out.close();
+		}
+
+		int status = connection.getResponseCode();
+		if (status < 200 || status > 299) {
+			String error = read(connection.getErrorStream());
+			throw new IOException(status + " " + connection.getResponseMessage()
+					+ (error.length() > 0 ? "\n" + error : ""));
+		}
+		return read(connection.getInputStream());
+	}
+
+	/**
+	 * Reads the stream fully so the connection can be reused
+	 */
+	private static String read(InputStream in) throws IOException {
+		if (in == null) {
+			return "";
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, n);
+			}
+			return new String(out.toByteArray(), UTF8);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.apigee.mgmtapi.sdk.core;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Loads the properties file passed as system property
+ * -DconfigFile.path="/to/dir/config.properties"
+ *
+ * Each file is read once and cached.
+ */
+public class ConfigProperties {
+
+	private static final Logger logger = Logger.getLogger(ConfigProperties.class);
+
+	public static final String CONFIG_FILE_PATH = "configFile.path";
+
+	private static final Map<String, Properties> cache = new ConcurrentHashMap<String, Properties>();
+
+	/**
+	 * Properties from -DconfigFile.path, null when the system property is not set
+	 * @return
+	 * @throws IOException
+	 */
+	public static Properties load() throws IOException {
+		String path = System.getProperty(CONFIG_FILE_PATH);
+		if (path == null || path.equalsIgnoreCase("")) {
+			return null;
+		}
+		return load(path);
+	}
+
+	/**
+	 * Properties from the file
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static Properties load(String path) throws IOException {
+		Properties properties = cache.get(path);
+		if (properties != null) {
+			return properties;
+		}
+		properties = new Properties();
+		InputStream in = new FileInputStream(path);
+		try {
+			properties.load(in);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			throw e;
+		} finally {
+			in.close();
+		}
+		cache.put(path, properties);
+		return properties;
+	}
+}